@@ -36,6 +36,8 @@ public class JumpingJack extends Game
         background.setPosition(480,320); 
         background.setTexture( Texture.load("assets/jumping-jack/background.png") );
         this.group.addEntity(background);
+        // background covers the entire window
+        this.setOpaqueBackground(true);
 
         this.map = new TileMap(10,15, 64,64);
         String[] mapData =
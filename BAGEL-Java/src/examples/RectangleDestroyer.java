@@ -40,6 +40,8 @@ public class RectangleDestroyer extends Game
         background.setTexture( Texture.load("assets/rectangle-destroyer/background.png") );
         background.setPosition(400,300);
         this.group.addEntity(background);
+        // background covers the entire window
+        this.setOpaqueBackground(true);
 
         this.paddle = new Sprite();
         this.paddle.setTexture( Texture.load("assets/rectangle-destroyer/paddle.png") );
@@ -45,6 +45,7 @@ public class SpaceRocks extends Game
         group.addEntity(spaceship);
 
         rockGroup = new Group();
+        rockGroup.enableSpatialHash(128);
         group.addEntity(rockGroup);
         laserGroup = new Group();
         group.addEntity(laserGroup);
@@ -108,33 +109,23 @@ public class SpaceRocks extends Game
             laserGroup.addEntity(laser);
         }
 
-        for (Entity laserObj : laserGroup.list())
+        laserGroup.forEachOverlappingPair( rockGroup, (laser, rock) ->
         {
-            Sprite laser = (Sprite)laserObj;
-            for (Entity rockObj : rockGroup.list())
-            {
-                Sprite rock = (Sprite)rockObj;
-                if ( laser.isOverlapping(rock) )
-                {
-                    laser.remove();
-                    rock.remove();
-                    
-                    Sprite explosion = new Sprite();
-                    explosion.setAnimation( explosionAnimation.clone() );
-                    explosion.setPosition( rock.x, rock.y );
-                    // remove after animation complete
-                    explosion.addAction( 
-                        ActionFactory.sequence(
-                            ActionFactory.isAnimationFinished(),
-                            ActionFactory.remove()
-                        )
-                    );
-                    group.addEntity(explosion);
-                    
-                }
+            laser.remove();
+            rock.remove();
 
-            }
-        }
+            Sprite explosion = new Sprite();
+            explosion.setAnimation( explosionAnimation.clone() );
+            explosion.setPosition( rock.x, rock.y );
+            // remove after animation complete
+            explosion.addAction( 
+                ActionFactory.sequence(
+                    ActionFactory.isAnimationFinished(),
+                    ActionFactory.remove()
+                )
+            );
+            group.addEntity(explosion);
+        });
 
         if ( rockGroup.count == 0 && !messageWin.visible )
         {
@@ -0,0 +1,296 @@
+package net.stemkoski.bagel;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.function.Predicate;
+
+/**
+ *  The list of {@link Action} objects attached to a {@link Sprite}
+ *  (see {@link Sprite#actionList}).
+ *  Allows {@link Sprite#act(double)} to run actions directly from this list
+ *  (rather than from a copy), even if actions add or remove other actions while running:
+ *  while actions are running, removed actions are recorded and only removed afterwards,
+ *  and added actions are not run until the next update.
+ *  Actions may be removed with {@link #remove(Object)}, {@link #clear()}, {@link #removeIf(Predicate)},
+ *  {@link #removeAll(Collection)} and {@link #retainAll(Collection)} while actions are running;
+ *  other changes that would move actions to different positions 
+ *  (such as removing by index, or inserting at an index) are not allowed at that time.
+ */
+class ActionList extends ArrayList<Action>
+{
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * determines if actions in this list are currently running
+	 */
+	boolean running;
+
+	/**
+	 * actions removed while actions in this list were running;
+	 * created when first needed
+	 */
+	ArrayList<Action> removedList;
+
+	/**
+	 * positions of actions that finished while actions in this list were running;
+	 * created when first needed
+	 */
+	BitSet finishedSet;
+
+	/**
+	 * Create an empty list.
+	 */
+	ActionList()
+	{
+		super();
+		this.running = false;
+	}
+
+	/**
+	 * Create a list containing the actions from another list.
+	 * @param actionList list of actions to copy
+	 */
+	ActionList(ArrayList<Action> actionList)
+	{
+		super(actionList);
+		this.running = false;
+	}
+
+	/**
+	 * Remove an action from this list. If actions are currently running,
+	 * the action is removed once all actions have finished running.
+	 * @param o action to remove
+	 * @return true if this list contained the action
+	 */
+	@Override
+	public boolean remove(Object o)
+	{
+		if ( !this.running )
+			return super.remove(o);
+
+		if ( !this.contains(o) )
+			return false;
+
+		this.deferRemove( (Action)o );
+		return true;
+	}
+
+	/**
+	 * Record an action to be removed once all actions have finished running.
+	 * @param a action to remove
+	 */
+	void deferRemove(Action a)
+	{
+		if (this.removedList == null)
+			this.removedList = new ArrayList<Action>();
+		this.removedList.add(a);
+	}
+
+	/**
+	 * Throw an exception if actions are currently running, 
+	 * since the requested change would move actions to different positions.
+	 */
+	void checkNotRunning()
+	{
+		if (this.running)
+			throw new IllegalStateException("Actions cannot be moved while actions are running; use remove(Object) instead.");
+	}
+
+	/**
+	 * Remove all actions that satisfy a condition. If actions are currently running,
+	 * the actions are removed once all actions have finished running.
+	 * @param filter condition that determines which actions are removed
+	 * @return true if any actions satisfy the condition
+	 */
+	@Override
+	public boolean removeIf(Predicate<? super Action> filter)
+	{
+		if ( !this.running )
+			return super.removeIf(filter);
+
+		boolean found = false;
+		for (int i = 0; i < this.size(); i++)
+		{
+			Action a = this.get(i);
+			if ( filter.test(a) )
+			{
+				this.deferRemove(a);
+				found = true;
+			}
+		}
+		return found;
+	}
+
+	/**
+	 * Remove all actions contained in a collection. If actions are currently running,
+	 * the actions are removed once all actions have finished running.
+	 * @param c collection of actions to remove
+	 * @return true if any actions were contained in the collection
+	 */
+	@Override
+	public boolean removeAll(Collection<?> c)
+	{
+		if ( !this.running )
+			return super.removeAll(c);
+		return this.removeIf( (a) -> c.contains(a) );
+	}
+
+	/**
+	 * Remove all actions not contained in a collection. If actions are currently running,
+	 * the actions are removed once all actions have finished running.
+	 * @param c collection of actions to keep
+	 * @return true if any actions were not contained in the collection
+	 */
+	@Override
+	public boolean retainAll(Collection<?> c)
+	{
+		if ( !this.running )
+			return super.retainAll(c);
+		return this.removeIf( (a) -> !c.contains(a) );
+	}
+
+	/**
+	 * Remove the action at a position; not allowed while actions are running
+	 * (this also applies to removing actions with an iterator).
+	 * @param index position of action to remove
+	 * @return the removed action
+	 */
+	@Override
+	public Action remove(int index)
+	{
+		this.checkNotRunning();
+		return super.remove(index);
+	}
+
+	/**
+	 * Insert an action at a position; not allowed while actions are running.
+	 * @param index position at which to insert the action
+	 * @param a action to insert
+	 */
+	@Override
+	public void add(int index, Action a)
+	{
+		this.checkNotRunning();
+		super.add(index, a);
+	}
+
+	/**
+	 * Insert actions at a position; not allowed while actions are running.
+	 * @param index position at which to insert the actions
+	 * @param c actions to insert
+	 * @return true if any actions were inserted
+	 */
+	@Override
+	public boolean addAll(int index, Collection<? extends Action> c)
+	{
+		this.checkNotRunning();
+		return super.addAll(index, c);
+	}
+
+	/**
+	 * Remove the actions in a range of positions; not allowed while actions are running.
+	 * @param fromIndex position of first action to remove
+	 * @param toIndex position after last action to remove
+	 */
+	@Override
+	protected void removeRange(int fromIndex, int toIndex)
+	{
+		this.checkNotRunning();
+		super.removeRange(fromIndex, toIndex);
+	}
+
+	/**
+	 * Change the order of actions; not allowed while actions are running.
+	 * @param c comparator that determines the order of actions
+	 */
+	@Override
+	public void sort(Comparator<? super Action> c)
+	{
+		this.checkNotRunning();
+		super.sort(c);
+	}
+
+	/**
+	 * Remove all actions from this list. If actions are currently running,
+	 * the actions are removed once all actions have finished running.
+	 */
+	@Override
+	public void clear()
+	{
+		if ( !this.running )
+		{
+			super.clear();
+			return;
+		}
+
+		for (int i = 0; i < this.size(); i++)
+			this.deferRemove( this.get(i) );
+	}
+
+	/**
+	 * Run every action in this list once, removing those that have finished.
+	 * Once all actions have run (or if an action throws an exception), finished actions are
+	 * removed by shifting the remaining actions forward in place,
+	 * so the order of actions is preserved and no copy of this list is required.
+	 * @param target sprite to which actions are applied
+	 * @param deltaTime elapsed time (seconds) since previous iteration of game loop
+	 */
+	void applyAll(Sprite target, double deltaTime)
+	{
+		// actions added while running are placed after this index and are not run
+		int runCount = this.size();
+		int ranCount = 0;
+
+		this.running = true;
+		try
+		{
+			for (int i = 0; i < runCount; i++)
+			{
+				boolean finished = this.get(i).apply(target, deltaTime);
+				ranCount++;
+				if (finished)
+				{
+					if (this.finishedSet == null)
+						this.finishedSet = new BitSet();
+					this.finishedSet.set(i);
+				}
+			}
+		}
+		finally
+		{
+			this.running = false;
+			this.removeFinished(ranCount);
+		}
+	}
+
+	/**
+	 * Remove the actions that finished while running, and the actions removed while running.
+	 * @param ranCount number of actions (at the start of this list) that were run
+	 */
+	void removeFinished(int ranCount)
+	{
+		if (this.finishedSet != null && !this.finishedSet.isEmpty())
+		{
+			int keepCount = 0;
+			int totalCount = this.size();
+			for (int i = 0; i < totalCount; i++)
+			{
+				if (i < ranCount && this.finishedSet.get(i))
+					continue;
+				super.set(keepCount, this.get(i));
+				keepCount++;
+			}
+			super.removeRange(keepCount, totalCount);
+			this.finishedSet.clear();
+		}
+
+		if (this.removedList != null && !this.removedList.isEmpty())
+		{
+			for (Action a : this.removedList)
+				super.remove(a);
+			this.removedList.clear();
+		}
+	}
+}
@@ -1,7 +1,6 @@
 package net.stemkoski.bagel;
 
 
-import java.io.File;
 import java.util.ArrayList;
 import javafx.scene.image.Image;
 
@@ -51,6 +50,12 @@ public class Animation
 	 */
 	double totalDuration;
 
+	/**
+	 *  Name of the image file loaded by {@link #load(String, int, int, double, boolean)};
+	 *  used to release the image (see {@link #release()}). Null for clones.
+	 */
+	String imageFileName;
+
     /**
      * Create an empty animation. Useful when reusing a previously loaded image;
 	 *  used by {@link #clone()}.
@@ -118,19 +123,39 @@ public class Animation
      * @return an Animation created according to the given parameters
      */
     public static Animation load(String imageFileName, int rows, int cols, double frameDuration, boolean loop)
+    {
+        Image image = Texture.loadImage(imageFileName);
+        Rectangle imageBounds = Texture.getImageBounds(imageFileName, image);
+        Animation anim = Animation.create(image, imageBounds, rows, cols, frameDuration, loop);
+        anim.imageFileName = imageFileName;
+
+        return anim;
+    }
+
+    /**
+     * Create an animation object from a sprite sheet contained in an area of an image.
+     * Used by {@link #load(String, int, int, double, boolean)} and {@link TextureAtlas}.
+     * @param image image containing the sprite sheet
+     * @param sheetBounds area of the image containing the sprite sheet
+     * @param rows number of rows of individual images in sprite sheet 
+     * @param cols number of columns of individual images in sprite sheet
+     * @param frameDuration amount of time to display each individual image
+     * @param loop whether this animation should repeat after last image is displayed
+     * @return an Animation created according to the given parameters
+     */
+    static Animation create(Image image, Rectangle sheetBounds, int rows, int cols, double frameDuration, boolean loop)
     {
         Animation anim = new Animation();
-        String fileName = new File(imageFileName).toURI().toString();
-        Image image = new Image(fileName);
-        double frameWidth  = image.getWidth() / cols;
-        double frameHeight = image.getHeight() / rows;
+        double frameWidth  = sheetBounds.width / cols;
+        double frameHeight = sheetBounds.height / rows;
         for (int y = 0; y < rows; y++)
         {
             for (int x = 0; x < cols; x++)
             {
                 Texture texture = new Texture();
                 texture.image = image;
-                texture.region = new Rectangle(x*frameWidth, y*frameHeight, frameWidth, frameHeight);
+                texture.region = new Rectangle(sheetBounds.left + x*frameWidth, sheetBounds.top + y*frameHeight, 
+                                               frameWidth, frameHeight);
                 anim.textureList.add( texture );
             }
         }
@@ -142,4 +167,19 @@ public class Animation
         return anim;
     }
 
+    /**
+     * Indicate that this animation (and all its clones) are no longer needed;
+     * once every texture or animation using the same image has been released, 
+     * the image may be discarded (see {@link AssetCache}).
+     * Releasing a clone has no effect.
+     */
+    public void release()
+    {
+        if (this.imageFileName == null)
+            return;
+
+        AssetCache.releaseImage(this.imageFileName);
+        this.imageFileName = null;
+    }
+
 }
@@ -0,0 +1,298 @@
+package net.stemkoski.bagel;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import javafx.scene.image.Image;
+import javafx.scene.text.Font;
+
+/**
+ *  Stores images that have been loaded from files,
+ *  so that loading the same file again (for example, with {@link Texture#load(String)}
+ *  or {@link Animation#load(String, int, int, double, boolean)})
+ *  reuses the previously loaded image instead of reading and decoding the file again.
+ *  <br><br>
+ *  Each image keeps count of the number of times it has been loaded and not yet released
+ *  (see {@link Texture#release()}, {@link Animation#release()}).
+ *  Images that are no longer used remain stored so that they can be reused, unless
+ *  a memory limit has been set with {@link #setMaxResidentBytes(long)}, in which case the
+ *  least recently used images that are no longer used are discarded to stay within the limit.
+ *  <br><br>
+ *  Fonts (see {@link Label#loadFontFromSystem(String, int)}) are also stored, by name (or file) and size;
+ *  fonts use little memory and are never discarded.
+ */
+public class AssetCache
+{
+	/**
+	 *  An image stored in the cache, together with its usage information.
+	 */
+	static class Entry
+	{
+		/**
+		 * the loaded image
+		 */
+		Image image;
+
+		/**
+		 * number of times the image has been loaded and not yet released
+		 */
+		int referenceCount;
+
+		/**
+		 * approximate memory used by the image pixel data (4 bytes per pixel)
+		 */
+		long byteSize;
+	}
+
+	/**
+	 * stored images, indexed by file location;
+	 * iteration order is from least recently to most recently used
+	 */
+	static LinkedHashMap<String, Entry> entryMap = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+
+	/**
+	 * determines if images are stored for reuse
+	 */
+	static boolean enabled = true;
+
+	/**
+	 * maximum total size of stored images (in bytes); 0 if there is no limit
+	 */
+	static long maxResidentBytes = 0;
+
+	/**
+	 * total size of stored images (in bytes)
+	 */
+	static long residentBytes = 0;
+
+	/**
+	 * stored fonts, indexed by font name (or file location) and size
+	 */
+	static HashMap<String, Font> fontMap = new HashMap<String, Font>();
+
+	/**
+	 * number of times an image was requested and was already stored
+	 */
+	static long hitCount = 0;
+
+	/**
+	 * number of times an image was requested and had to be loaded from a file
+	 */
+	static long missCount = 0;
+
+	/**
+	 * Get the key used to store the image loaded from a file;
+	 * different names for the same file (relative or absolute) have the same key.
+	 * @param imageFileName name of the image file
+	 * @return key used to store the image
+	 */
+	static String getKey(String imageFileName)
+	{
+		return new File(imageFileName).toURI().toString();
+	}
+
+	/**
+	 * Get the image loaded from a file, loading it only if it has not already been stored,
+	 * and increase the number of references to it.
+	 * May be called from any thread (see {@link AssetLoader}); 
+	 * image files are read and decoded outside of the lock on this cache,
+	 * so that several different images may be loaded at the same time.
+	 * @param imageFileName name of the image file
+	 * @return the image loaded from the file
+	 */
+	static Image acquireImage(String imageFileName)
+	{
+		String key = getKey(imageFileName);
+		boolean storeImage;
+
+		synchronized (AssetCache.class)
+		{
+			storeImage = AssetCache.enabled;
+			Entry entry = entryMap.get(key);
+			if (storeImage && entry != null)
+			{
+				hitCount++;
+				entry.referenceCount++;
+				return entry.image;
+			}
+			if (storeImage)
+				missCount++;
+		}
+
+		Image image = new Image(key);
+		// images that could not be loaded are not stored, so that loading may be retried
+		if (!storeImage || image.isError())
+			return image;
+
+		synchronized (AssetCache.class)
+		{
+			// the same image may have been stored by another thread in the meantime
+			Entry entry = entryMap.get(key);
+			if (entry != null)
+			{
+				entry.referenceCount++;
+				return entry.image;
+			}
+
+			entry = new Entry();
+			entry.image = image;
+			entry.referenceCount = 1;
+			entry.byteSize = 4L * (long)image.getWidth() * (long)image.getHeight();
+			entryMap.put(key, entry);
+			residentBytes += entry.byteSize;
+
+			evictUnused();
+			return image;
+		}
+	}
+
+	/**
+	 * Get a font installed on this system, creating it only if it has not already been stored.
+	 * @param fontName name of font (e.g. "Arial")
+	 * @param fontSize size of font
+	 * @return the font
+	 */
+	static synchronized Font getFont(String fontName, int fontSize)
+	{
+		String key = fontName + ":" + fontSize;
+		Font font = fontMap.get(key);
+		if (font == null)
+		{
+			font = new Font(fontName, fontSize);
+			if (AssetCache.enabled)
+				fontMap.put(key, font);
+		}
+		return font;
+	}
+
+	/**
+	 * Get a font loaded from a file, loading it only if it has not already been stored.
+	 * @param fontFileName name of font file
+	 * @param fontSize size of font
+	 * @return the font, or null if the file could not be loaded
+	 */
+	static synchronized Font getFontFromFile(String fontFileName, int fontSize)
+	{
+		String key = getKey(fontFileName) + ":" + fontSize;
+		Font font = fontMap.get(key);
+		if (font == null)
+		{
+			font = Font.loadFont( "file:" + fontFileName, fontSize );
+			if (font != null && AssetCache.enabled)
+				fontMap.put(key, font);
+		}
+		return font;
+	}
+
+	/**
+	 * Decrease the number of references to the image loaded from a file.
+	 * Once there are no references, the image may be discarded to stay within the memory limit.
+	 * @param imageFileName name of the image file
+	 */
+	static synchronized void releaseImage(String imageFileName)
+	{
+		Entry entry = entryMap.get( getKey(imageFileName) );
+		if (entry == null || entry.referenceCount == 0)
+			return;
+
+		entry.referenceCount--;
+		evictUnused();
+	}
+
+	/**
+	 * Discard least recently used images that are no longer referenced,
+	 * until total size is within the memory limit (if set).
+	 */
+	static void evictUnused()
+	{
+		if (maxResidentBytes <= 0)
+			return;
+
+		Iterator<Entry> iterator = entryMap.values().iterator();
+		while (residentBytes > maxResidentBytes && iterator.hasNext())
+		{
+			Entry entry = iterator.next();
+			if (entry.referenceCount == 0)
+			{
+				iterator.remove();
+				residentBytes -= entry.byteSize;
+			}
+		}
+	}
+
+	/**
+	 * Set the maximum total size (in bytes) of stored images.
+	 * When exceeded, the least recently used images that are no longer referenced are discarded;
+	 * images that are still referenced are never discarded.
+	 * @param maxBytes maximum total size of stored images; 0 for no limit (the default)
+	 */
+	public static synchronized void setMaxResidentBytes(long maxBytes)
+	{
+		maxResidentBytes = maxBytes;
+		evictUnused();
+	}
+
+	/**
+	 * Set whether loaded images are stored for reuse (enabled by default).
+	 * When disabled, each load reads the image file again.
+	 * @param enabled whether loaded images are stored for reuse
+	 */
+	public static synchronized void setEnabled(boolean enabled)
+	{
+		AssetCache.enabled = enabled;
+	}
+
+	/**
+	 * Discard all stored images that are no longer referenced.
+	 */
+	public static synchronized void clearUnused()
+	{
+		Iterator<Entry> iterator = entryMap.values().iterator();
+		while ( iterator.hasNext() )
+		{
+			Entry entry = iterator.next();
+			if (entry.referenceCount == 0)
+			{
+				iterator.remove();
+				residentBytes -= entry.byteSize;
+			}
+		}
+	}
+
+	/**
+	 * Get the number of times a requested image was already stored.
+	 * @return number of cache hits
+	 */
+	public static synchronized long getHitCount()
+	{
+		return hitCount;
+	}
+
+	/**
+	 * Get the number of times a requested image had to be loaded from a file.
+	 * @return number of cache misses
+	 */
+	public static synchronized long getMissCount()
+	{
+		return missCount;
+	}
+
+	/**
+	 * Get the approximate memory used by all stored images (4 bytes per pixel).
+	 * @return total size of stored images, in bytes
+	 */
+	public static synchronized long getResidentBytes()
+	{
+		return residentBytes;
+	}
+
+	/**
+	 * Get the number of stored images.
+	 * @return the number of stored images
+	 */
+	public static synchronized int getImageCount()
+	{
+		return entryMap.size();
+	}
+}
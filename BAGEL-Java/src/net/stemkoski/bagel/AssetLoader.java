@@ -0,0 +1,306 @@
+package net.stemkoski.bagel;
+
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import javafx.scene.image.Image;
+
+/**
+ *  Loads a list of images and audio files on background threads, several at a time,
+ *  so that a game can display a loading screen (or start sooner)
+ *  instead of waiting for each file to load in turn.
+ *  Assets are listed with a name, loaded with {@link #start()},
+ *  and retrieved by name once loading has finished. For example:
+ *  <pre>{@code
+ *  // in create()
+ *  loader = new AssetLoader();
+ *  loader.addTexture("rock", "assets/space-rocks/rock.png");
+ *  loader.addAnimation("explosion", "assets/space-rocks/explosion.png", 6, 6, 0.03, false);
+ *  loader.addSound("drop", "assets/starfish-collector/Water-Drop.wav");
+ *  loader.start();
+ *
+ *  // in update()
+ *  if ( !loader.isFinished() )
+ *      loadingLabel.text = "Loading: " + Math.round(loader.getProgress() * 100) + "%";
+ *  else if (rockTexture == null)
+ *      rockTexture = loader.getTexture("rock");
+ *  }</pre>
+ *  Images loaded in this way are shared through the {@link AssetCache}.
+ *  Assets that could not be loaded are not available; the reason is available from
+ *  {@link #getError(String)}, and {@link #getFailedNames()} lists all such assets.
+ */
+public class AssetLoader
+{
+	/**
+	 * names of the assets to load, in the order they were added
+	 */
+	ArrayList<String> nameList;
+
+	/**
+	 * methods that load each asset, corresponding to {@link #nameList}
+	 */
+	ArrayList<Callable<Object>> taskList;
+
+	/**
+	 * assets that have finished loading, indexed by name
+	 */
+	ConcurrentHashMap<String, Object> assetMap;
+
+	/**
+	 * reasons that assets could not be loaded, indexed by name
+	 */
+	ConcurrentHashMap<String, Exception> errorMap;
+
+	/**
+	 * number of assets that have finished loading (successfully or not)
+	 */
+	AtomicInteger finishedCount;
+
+	/**
+	 * number of threads used to load assets
+	 */
+	int threadCount;
+
+	/**
+	 * runs the loading tasks; null until {@link #start()} is called
+	 */
+	ExecutorService executor;
+
+	/**
+	 * Create an empty loader that uses one thread per available processor.
+	 */
+	public AssetLoader()
+	{
+		this( Runtime.getRuntime().availableProcessors() );
+	}
+
+	/**
+	 * Create an empty loader.
+	 * @param threadCount number of assets that may be loaded at the same time
+	 */
+	public AssetLoader(int threadCount)
+	{
+		this.nameList = new ArrayList<String>();
+		this.taskList = new ArrayList<Callable<Object>>();
+		this.assetMap = new ConcurrentHashMap<String, Object>();
+		this.errorMap = new ConcurrentHashMap<String, Exception>();
+		this.finishedCount = new AtomicInteger(0);
+		this.threadCount = Math.max(1, threadCount);
+		this.executor = null;
+	}
+
+	/**
+	 * Add an asset to the list of assets to load.
+	 * @param name name used to retrieve the asset
+	 * @param task method that loads the asset
+	 */
+	void addTask(String name, Callable<Object> task)
+	{
+		if (this.executor != null)
+			throw new IllegalStateException("Assets cannot be added after loading has started.");
+
+		this.nameList.add(name);
+		this.taskList.add(task);
+	}
+
+	/**
+	 * Add an image to the list of assets to load; see {@link Texture#load(String)}.
+	 * @param name name used to retrieve the Texture with {@link #getTexture(String)}
+	 * @param imageFileName name of the image file
+	 */
+	public void addTexture(String name, String imageFileName)
+	{
+		this.addTask( name, () -> Texture.load(imageFileName) );
+	}
+
+	/**
+	 * Add an animation to the list of assets to load;
+	 * see {@link Animation#load(String, int, int, double, boolean)}.
+	 * @param name name used to retrieve the Animation with {@link #getAnimation(String)}
+	 * @param imageFileName name of image file
+	 * @param rows number of rows of individual images in file
+	 * @param cols number of columns of individual images in file
+	 * @param frameDuration amount of time to display each individual image
+	 * @param loop whether this animation should repeat after last image is displayed
+	 */
+	public void addAnimation(String name, String imageFileName, int rows, int cols, double frameDuration, boolean loop)
+	{
+		this.addTask( name, () -> Animation.load(imageFileName, rows, cols, frameDuration, loop) );
+	}
+
+	/**
+	 * Add a sound file to the list of assets to load; see {@link Audio#loadSound(String)}.
+	 * @param name name used to retrieve the Audio with {@link #getAudio(String)}
+	 * @param fileName name of the sound file
+	 */
+	public void addSound(String name, String fileName)
+	{
+		this.addTask( name, () -> Audio.loadSound(fileName) );
+	}
+
+	/**
+	 * Add a music file to the list of assets to load; see {@link Audio#loadMusic(String)}.
+	 * @param name name used to retrieve the Audio with {@link #getAudio(String)}
+	 * @param fileName name of the music file
+	 */
+	public void addMusic(String name, String fileName)
+	{
+		this.addTask( name, () -> Audio.loadMusic(fileName) );
+	}
+
+	/**
+	 * Begin loading all listed assets on background threads; returns immediately.
+	 * Use {@link #getProgress()} or {@link #isFinished()} to check whether loading has finished,
+	 * or {@link #waitUntilFinished()} to wait for loading to finish.
+	 */
+	public void start()
+	{
+		if (this.executor != null)
+			return;
+
+		this.executor = Executors.newFixedThreadPool( this.threadCount,
+				(Runnable r) ->
+				{
+					Thread thread = new Thread(r, "AssetLoader");
+					thread.setDaemon(true);
+					return thread;
+				}
+		);
+
+		for (int i = 0; i < this.nameList.size(); i++)
+		{
+			String name = this.nameList.get(i);
+			Callable<Object> task = this.taskList.get(i);
+			this.executor.submit( () ->
+			{
+				try
+				{
+					Object asset = task.call();
+
+					// images do not throw exceptions when they cannot be loaded
+					Image image = null;
+					if (asset instanceof Texture)
+						image = ((Texture)asset).image;
+					else if (asset instanceof Animation)
+						image = ((Animation)asset).textureList.get(0).image;
+					if (image != null && image.isError())
+						throw image.getException();
+
+					this.assetMap.put( name, asset );
+				}
+				catch (Exception error)
+				{
+					this.errorMap.put( name, error );
+				}
+				finally
+				{
+					this.finishedCount.incrementAndGet();
+				}
+			});
+		}
+
+		this.executor.shutdown();
+	}
+
+	/**
+	 * Wait until all listed assets have finished loading;
+	 * starts loading if {@link #start()} has not been called.
+	 */
+	public void waitUntilFinished()
+	{
+		this.start();
+		try
+		{
+			this.executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+		}
+		catch (InterruptedException error)
+		{
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Get the fraction of listed assets that have finished loading.
+	 * @return value from 0.0 (none loaded) to 1.0 (all loaded)
+	 */
+	public double getProgress()
+	{
+		if ( this.nameList.isEmpty() )
+			return 1;
+
+		return this.finishedCount.get() / (double)this.nameList.size();
+	}
+
+	/**
+	 * Determine if all listed assets have finished loading.
+	 * @return true if all listed assets have finished loading
+	 */
+	public boolean isFinished()
+	{
+		return this.finishedCount.get() == this.nameList.size();
+	}
+
+	/**
+	 * Get the reason that an asset could not be loaded.
+	 * @param name name used when the asset was added
+	 * @return the exception that occurred while loading the asset, 
+	 *   or null if the asset has loaded successfully or has not finished loading
+	 */
+	public Exception getError(String name)
+	{
+		return this.errorMap.get(name);
+	}
+
+	/**
+	 * Get the names of all assets that could not be loaded (so far), in the order they were added.
+	 * @return list of names of assets that could not be loaded
+	 */
+	public ArrayList<String> getFailedNames()
+	{
+		ArrayList<String> failedList = new ArrayList<String>();
+		for (String name : this.nameList)
+		{
+			if ( this.errorMap.containsKey(name) )
+				failedList.add(name);
+		}
+		return failedList;
+	}
+
+	/**
+	 * Get a loaded Texture.
+	 * @param name name used when the Texture was added
+	 * @return the loaded Texture, or null if it has not (yet) been loaded 
+	 *   or could not be loaded (see {@link #getError(String)})
+	 */
+	public Texture getTexture(String name)
+	{
+		return (Texture)this.assetMap.get(name);
+	}
+
+	/**
+	 * Get a loaded Animation. If used by several sprites,
+	 * each sprite should use a copy (see {@link Animation#clone()}).
+	 * @param name name used when the Animation was added
+	 * @return the loaded Animation, or null if it has not (yet) been loaded
+	 *   or could not be loaded (see {@link #getError(String)})
+	 */
+	public Animation getAnimation(String name)
+	{
+		return (Animation)this.assetMap.get(name);
+	}
+
+	/**
+	 * Get a loaded Audio object.
+	 * @param name name used when the Audio was added
+	 * @return the loaded Audio object, or null if it has not (yet) been loaded
+	 *   or could not be loaded (see {@link #getError(String)})
+	 */
+	public Audio getAudio(String name)
+	{
+		return (Audio)this.assetMap.get(name);
+	}
+}
@@ -38,6 +38,9 @@ public class Audio
 	public static Audio loadSound(String fileName)
     {
         Audio audio = new Audio();
+        // audio is not loaded when running without a window; all methods have no effect
+        if (Game.headless)
+            return audio;
         audio.sound = new AudioClip( new File(fileName).toURI().toString() );
         return audio;
     }
@@ -50,6 +53,8 @@ public class Audio
 	public static Audio loadMusic(String fileName)
     {
         Audio audio = new Audio();
+        if (Game.headless)
+            return audio;
         audio.music = new Media( new File(fileName).toURI().toString() );
         audio.musicPlayer = new MediaPlayer( audio.music );
         return audio;
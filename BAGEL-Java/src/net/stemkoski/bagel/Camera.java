@@ -0,0 +1,217 @@
+package net.stemkoski.bagel;
+
+/**
+ *  Determines which part of the game world is displayed on the screen;
+ *  useful for game worlds that are larger than the screen.
+ *  The camera position is the point in the game world displayed at the center of the screen;
+ *  the game world may also be zoomed and rotated around this point.
+ *  <br><br>
+ *  Each {@link Game} has a camera (see {@link Game#camera}), initially positioned
+ *  so that game world coordinates are the same as screen coordinates. For example:
+ *  <pre>{@code
+ *  // in update()
+ *  camera.centerOn(player);
+ *  }</pre>
+ *  Sprites that are completely outside of the visible area are not drawn.
+ *  {@link Label}s are always drawn at screen coordinates, and are not affected by the camera.
+ */
+public class Camera
+{
+	/**
+	 * x-coordinate of the point in the game world displayed at the center of the screen
+	 */
+	public double x;
+
+	/**
+	 * y-coordinate of the point in the game world displayed at the center of the screen
+	 */
+	public double y;
+
+	/**
+	 * amount of magnification; values greater than 1 make objects appear larger
+	 */
+	public double zoom;
+
+	/**
+	 * angle of rotation (in degrees) of the camera;
+	 * the game world appears to rotate by the same angle in the opposite direction
+	 */
+	public double angle;
+
+	/**
+	 * width of the area of the screen where the game world is displayed
+	 */
+	double viewWidth;
+
+	/**
+	 * height of the area of the screen where the game world is displayed
+	 */
+	double viewHeight;
+
+	/**
+	 * area of the game world that is visible, calculated by {@link #getViewBoundary()}
+	 */
+	Rectangle viewBoundary;
+
+	/**
+	 * Create a camera that displays the game world without zooming or rotation,
+	 * with game world coordinates the same as screen coordinates.
+	 * @param viewWidth width of the screen
+	 * @param viewHeight height of the screen
+	 */
+	public Camera(double viewWidth, double viewHeight)
+	{
+		this.viewWidth = viewWidth;
+		this.viewHeight = viewHeight;
+		this.x = viewWidth / 2;
+		this.y = viewHeight / 2;
+		this.zoom = 1;
+		this.angle = 0;
+		this.viewBoundary = new Rectangle();
+	}
+
+	/**
+	 * Set the point in the game world displayed at the center of the screen.
+	 * @param x x-coordinate of center of view
+	 * @param y y-coordinate of center of view
+	 */
+	public void setPosition(double x, double y)
+	{
+		this.x = x;
+		this.y = y;
+	}
+
+	/**
+	 * Move the camera by the specified amounts.
+	 * @param deltaX amount to move camera along x direction
+	 * @param deltaY amount to move camera along y direction
+	 */
+	public void moveBy(double deltaX, double deltaY)
+	{
+		this.x += deltaX;
+		this.y += deltaY;
+	}
+
+	/**
+	 * Move the camera so that a sprite is displayed at the center of the screen.
+	 * @param sprite the sprite to display at the center of the screen
+	 */
+	public void centerOn(Sprite sprite)
+	{
+		this.setPosition(sprite.x, sprite.y);
+	}
+
+	/**
+	 * Set the amount of magnification.
+	 * @param zoom amount of magnification; values greater than 1 make objects appear larger
+	 */
+	public void setZoom(double zoom)
+	{
+		this.zoom = zoom;
+	}
+
+	/**
+	 * Set the angle of rotation of the camera.
+	 * @param angle angle of rotation (in degrees)
+	 */
+	public void setAngle(double angle)
+	{
+		this.angle = angle;
+	}
+
+	/**
+	 * Rotate the camera by the specified angle.
+	 * @param deltaAngle the angle (in degrees) to rotate the camera
+	 */
+	public void rotateBy(double deltaAngle)
+	{
+		this.angle += deltaAngle;
+	}
+
+	/**
+	 * Set the size of the area of the screen where the game world is displayed.
+	 * The point displayed at the center of the screen is not changed.
+	 * @param viewWidth width of the screen
+	 * @param viewHeight height of the screen
+	 */
+	public void setViewSize(double viewWidth, double viewHeight)
+	{
+		this.viewWidth = viewWidth;
+		this.viewHeight = viewHeight;
+	}
+
+	/**
+	 * Get the smallest rectangle (aligned with the x and y axes)
+	 * containing the area of the game world that is visible.
+	 * The rectangle is reused by later calls to this method.
+	 * @return the visible area of the game world
+	 */
+	public Rectangle getViewBoundary()
+	{
+		double halfWidth  = this.viewWidth / 2 / this.zoom;
+		double halfHeight = this.viewHeight / 2 / this.zoom;
+
+		if (this.angle != 0)
+		{
+			double A = this.angle * Math.PI/180;
+			double cosA = Math.abs( Math.cos(A) );
+			double sinA = Math.abs( Math.sin(A) );
+			double rotatedHalfWidth  = halfWidth * cosA + halfHeight * sinA;
+			double rotatedHalfHeight = halfWidth * sinA + halfHeight * cosA;
+			halfWidth  = rotatedHalfWidth;
+			halfHeight = rotatedHalfHeight;
+		}
+
+		this.viewBoundary.setValues(this.x - halfWidth, this.y - halfHeight, 2 * halfWidth, 2 * halfHeight);
+		return this.viewBoundary;
+	}
+
+	/**
+	 * Check if any part of a sprite (boundary rectangle) is in the visible area of the game world.
+	 * @param sprite the sprite to check
+	 * @return true if part of the sprite is visible
+	 */
+	public boolean isVisible(Sprite sprite)
+	{
+		return !sprite.isOutside( this.getViewBoundary() );
+	}
+
+	/**
+	 * Calculate the position in the game world displayed at a point on the screen;
+	 * for example, the position of the mouse (see {@link Input#getMousePosition()}).
+	 * @param screenX x-coordinate of point on screen
+	 * @param screenY y-coordinate of point on screen
+	 * @return the corresponding position in the game world
+	 */
+	public Vector2 screenToWorld(double screenX, double screenY)
+	{
+		double dx = (screenX - this.viewWidth / 2) / this.zoom;
+		double dy = (screenY - this.viewHeight / 2) / this.zoom;
+		double A = this.angle * Math.PI/180;
+		double cosA = Math.cos(A);
+		double sinA = Math.sin(A);
+		return new Vector2( this.x + dx * cosA - dy * sinA, this.y + dx * sinA + dy * cosA );
+	}
+
+	/**
+	 * Use this camera as the base transform for drawing game world objects
+	 * (see {@link RenderState#setBaseTransform(double, double, double, double, double, double)}).
+	 */
+	void apply()
+	{
+		double A = this.angle * Math.PI/180;
+		double cosA = Math.cos(A);
+		double sinA = Math.sin(A);
+
+		// scale and rotate by -angle around the camera position, then move it to the center of the screen
+		double mxx =  this.zoom * cosA;
+		double mxy =  this.zoom * sinA;
+		double myx = -this.zoom * sinA;
+		double myy =  this.zoom * cosA;
+		double mxt = this.viewWidth / 2  - (mxx * this.x + mxy * this.y);
+		double myt = this.viewHeight / 2 - (myx * this.x + myy * this.y);
+
+		RenderState.setBaseTransform(mxx, myx, mxy, myy, mxt, myt);
+		RenderState.viewBoundary = this.getViewBoundary();
+	}
+}
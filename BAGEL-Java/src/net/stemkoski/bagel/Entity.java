@@ -17,6 +17,57 @@ public class Entity
      */
     Group container;
     
+    /**
+     * Determines the order in which Entity objects in the same {@link Group} are drawn
+     * (see {@link #setLayer(int)}); the default value is 0.
+     */
+    int layer;
+    
+    /**
+     * Number of Entity objects added to its {@link #container} before this one;
+     * used to keep the original order of Entity objects that are otherwise drawn in the same order
+     * (see {@link Group#compareDrawOrder(Entity, Entity)}).
+     */
+    int containerIndex;
+    
+    /**
+     * Section of its {@link #container} containing this Entity, assigned when it was added;
+     * sprites are only sorted by image within the same section (see {@link Group#setDrawSortedByImage(boolean)}).
+     */
+    int drawSegment;
+    
+    /**
+     * Number identifying the image used to draw this Entity, when the drawing order was last calculated;
+     * sprites are sorted by this number within the same section (see {@link Group#updateImageKey(Entity)}).
+     * Always 0 for Entity objects that are not sprites.
+     */
+    int imageKey;
+    
+    /**
+     * Set the layer of this Entity, which determines the order in which Entity objects 
+     * in the same {@link Group} are drawn: Entity objects with a greater layer are drawn later, 
+     * and so appear on top of Entity objects with a lesser layer; Entity objects with the same layer 
+     * are drawn in the order they were added. For example, background sprites could use layer -1,
+     * and sprites that should appear in front of characters could use layer 1.
+     * May be changed at any time; the default value is 0.
+     * @param layer the layer of this Entity
+     */
+    public void setLayer(int layer)
+    {
+        if (container != null)
+            container.layerChanged(this.layer, layer);
+        this.layer = layer;
+    }
+    
+    /**
+     * Get the layer of this Entity (see {@link #setLayer(int)}).
+     * @return the layer of this Entity
+     */
+    public int getLayer()
+    {
+        return this.layer;
+    }
+    
     /**
      * Remove this object from the {@link Group} it is contained in.
      */
@@ -40,4 +91,11 @@ public class Entity
     void act(double deltaTime)
     {  }
     
+    /**
+     * Store the current state of this Entity before a fixed step is simulated,
+     * for use in interpolation when rendering (see {@link Game#setFixedTimestep(double, int)}).
+     */
+    void savePreviousState()
+    {  }
+    
 }
\ No newline at end of file
@@ -7,6 +7,7 @@ import javafx.scene.layout.Pane;
 import javafx.scene.canvas.Canvas;
 import javafx.scene.canvas.GraphicsContext;
 import javafx.scene.paint.Color;
+import javafx.scene.transform.Scale;
 import javafx.animation.AnimationTimer;
 
 /**
@@ -25,6 +26,15 @@ public class Game extends Application
 	 * default height of game canvas. may change if desired.
 	 */
 	public static int windowHeight = 600;
+
+	/**
+	 * Number of canvas pixels drawn for each unit of window size. may change if desired 
+	 * (before the game starts). Values less than 1 draw fewer pixels, which are enlarged 
+	 * to fill the window (faster on slower computers); values greater than 1 draw more pixels,
+	 * which are reduced to fit the window (sharper on high resolution screens).
+	 * Game coordinates and mouse positions are always measured in window units.
+	 */
+	public static double renderScale = 1;
 	
 	/**
 	 * area where game graphics are displayed
@@ -46,6 +56,23 @@ public class Game extends Application
 	 */
 	public Group group;
 
+	/**
+	 * Determines which part of the game world is displayed (see {@link Camera});
+	 * initially displays the area from (0,0) to ({@link #windowWidth}, {@link #windowHeight}).
+	 */
+	public Camera camera;
+
+	/**
+	 * color used to fill the canvas before drawing each frame (see {@link #setBackgroundColor(Color)})
+	 */
+	Color backgroundColor = Color.GRAY;
+
+	/**
+	 * determines if the canvas is not filled before drawing each frame
+	 * (see {@link #setOpaqueBackground(boolean)})
+	 */
+	boolean opaqueBackground = false;
+
     /**
      * timestamp for start of previous game loop; used to calculate {@link #deltaTime}
      */
@@ -56,6 +83,52 @@ public class Game extends Application
 	 */
 	public double deltaTime; 
 
+	/**
+	 * determines if the game state is updated in steps of equal duration;
+	 * see {@link #setFixedTimestep(double, int)}
+	 */
+	boolean fixedTimestep;
+
+	/**
+	 * duration of each step when {@link #fixedTimestep} is true
+	 */
+	double fixedDeltaTime;
+
+	/**
+	 * maximum number of steps that may be run during a single iteration of the game loop
+	 * when {@link #fixedTimestep} is true
+	 */
+	int maxStepsPerFrame;
+
+	/**
+	 * amount of time that has passed but has not yet been simulated by a fixed step
+	 */
+	double accumulatedTime;
+
+	/**
+	 * Fraction of a fixed step (from 0 to 1) that has passed since the most recent fixed step;
+	 * used by {@link Sprite} to interpolate between previous and current positions when rendering.
+	 * Always 1 when fixed timestep mode is not used.
+	 */
+	static double interpolationAlpha = 1;
+
+	/**
+	 * Determines if the game is running without a window (see {@link HeadlessRunner});
+	 * in this case, images, fonts, and audio are not loaded.
+	 * Only true while a HeadlessRunner without a canvas is creating or running a game.
+	 */
+	static volatile boolean headless = false;
+
+	/**
+	 * stores the input events and time of each frame; may be null
+	 */
+	InputRecorder inputRecorder;
+
+	/**
+	 * supplies recorded input events and frame times instead of actual events and times; may be null
+	 */
+	InputReplay inputReplay;
+
     /**
      * Initialize objects used in this game.
      * This method should be overridden by the specific game extending this class.
@@ -73,6 +146,159 @@ public class Game extends Application
 	public void update(double dt)
     {    }
     
+	/**
+	 * Update the game state in steps of equal duration, independent of the display refresh rate.
+	 * Time that passes between iterations of the game loop is accumulated,
+	 * and input, {@link Group#act(double)} and {@link #update(double)} are run 
+	 * once for each full step of accumulated time.
+	 * When rendering, {@link Sprite} positions are interpolated between the two most recent steps.
+	 * If the game loop is delayed (for example, while the window is dragged), 
+	 * at most maxStepsPerFrame steps are run and any remaining time is discarded,
+	 * so that the game slows down rather than taking very large steps.
+	 * @param stepsPerSecond number of steps per second (for example, 60)
+	 * @param maxStepsPerFrame maximum number of steps to run during a single iteration of the game loop
+	 */
+	public void setFixedTimestep(double stepsPerSecond, int maxStepsPerFrame)
+	{
+		this.fixedTimestep = true;
+		this.fixedDeltaTime = 1 / stepsPerSecond;
+		this.maxStepsPerFrame = maxStepsPerFrame;
+		this.accumulatedTime = 0;
+	}
+	
+	/**
+	 * Update the game state once per iteration of the game loop, 
+	 * using the actual amount of time that has passed (the default behavior).
+	 */
+	public void disableFixedTimestep()
+	{
+		this.fixedTimestep = false;
+		this.accumulatedTime = 0;
+		Game.interpolationAlpha = 1;
+	}
+	
+	/**
+	 * Record the input events and time of each frame, until set to null (see {@link InputRecorder}).
+	 * @param recorder object used to record each frame, or null to stop recording
+	 */
+	public void setInputRecorder(InputRecorder recorder)
+	{
+		this.inputRecorder = recorder;
+	}
+
+	/**
+	 * Replace the input events and time of each frame with recorded events and times,
+	 * until all recorded frames have been replayed (see {@link InputReplay}).
+	 * @param replay object used to supply recorded frames, or null to stop replaying
+	 */
+	public void setInputReplay(InputReplay replay)
+	{
+		this.inputReplay = replay;
+	}
+
+	/**
+	 * Process input and update game state once.
+	 * @param dt amount of time to simulate
+	 */
+	void step(double dt)
+	{
+		// process input
+		this.input.camera = this.camera;
+		this.input.update(dt);
+
+		// update game state
+		this.group.act(dt);
+		this.update(dt);
+	}
+	
+	/**
+	 * Update game state according to the amount of time that has passed 
+	 * since the previous iteration of the game loop; runs either a single step, 
+	 * or as many fixed steps as required (see {@link #setFixedTimestep(double, int)}).
+	 * Input events and frame time are recorded or replaced by recorded values, if requested
+	 * (see {@link #setInputRecorder(InputRecorder)} and {@link #setInputReplay(InputReplay)}).
+	 * @param frameTime amount of time that has passed since the previous iteration of the game loop
+	 */
+	void advance(double frameTime)
+	{
+		if (this.inputReplay != null && !this.inputReplay.isFinished())
+		{
+			frameTime = this.inputReplay.replayFrame(this.input);
+			this.deltaTime = frameTime;
+		}
+
+		if (this.inputRecorder != null)
+			this.inputRecorder.recordFrame(this.input, frameTime);
+
+		if ( !this.fixedTimestep )
+		{
+			this.step(frameTime);
+			return;
+		}
+		
+		this.accumulatedTime += frameTime;
+		
+		int stepCount = 0;
+		while (this.accumulatedTime >= this.fixedDeltaTime && stepCount < this.maxStepsPerFrame)
+		{
+			this.group.savePreviousState();
+			this.step(this.fixedDeltaTime);
+			this.accumulatedTime -= this.fixedDeltaTime;
+			stepCount++;
+		}
+		
+		// too far behind; discard remaining full steps
+		if (this.accumulatedTime >= this.fixedDeltaTime)
+			this.accumulatedTime %= this.fixedDeltaTime;
+		
+		Game.interpolationAlpha = this.accumulatedTime / this.fixedDeltaTime;
+	}
+    
+	/**
+	 * Set the color used to fill the canvas before drawing each frame (gray by default).
+	 * @param color the background color
+	 */
+	public void setBackgroundColor(Color color)
+	{
+		this.backgroundColor = color;
+	}
+
+	/**
+	 * Set whether the objects drawn each frame (for example, a background sprite or {@link TileMap})
+	 * completely cover the canvas. If so, filling the canvas with the background color 
+	 * is unnecessary and is skipped.
+	 * @param opaque true if the canvas is completely covered each frame
+	 */
+	public void setOpaqueBackground(boolean opaque)
+	{
+		this.opaqueBackground = opaque;
+	}
+
+	/**
+	 * Clear the canvas and render all objects in {@link #group}.
+	 */
+	void render()
+	{
+		// state of context may have been changed outside of library drawing methods
+		RenderState.reset(this.context);
+		RenderState.clearBaseTransform();
+		RenderState.screenScale = Game.renderScale;
+		RenderState.setScreenIdentityTransform(this.context);
+		RenderState.setGlobalAlpha(this.context, 1);
+
+		if ( !this.opaqueBackground )
+		{
+			// canvas size in window units
+			Canvas canvas = this.context.getCanvas();
+			RenderState.setFill(this.context, this.backgroundColor);
+			this.context.fillRect( 0,0, canvas.getWidth() / Game.renderScale, canvas.getHeight() / Game.renderScale );
+		}
+
+		// draw game world as seen by the camera
+		this.camera.apply();
+		this.group.draw(this.context);
+	}
+    
 	/**
 	 *  Initializes the window, Input and Group objects, 
 	 *  and manages the life cycle of the game (initialization and game loop).
@@ -86,16 +312,21 @@ public class Game extends Application
         mainStage.setResizable(false);
 
         Pane root = new Pane();
-        Scene mainScene = new Scene(root);
+        Scene mainScene = new Scene(root, Game.windowWidth, Game.windowHeight);
         mainStage.setScene(mainScene);
         mainStage.sizeToScene();
 
-        this.canvas = new Canvas(Game.windowWidth, Game.windowHeight);
+        // canvas is resized to fit window when render scale is used
+        this.canvas = new Canvas( Math.round(Game.windowWidth * Game.renderScale), 
+                                  Math.round(Game.windowHeight * Game.renderScale) );
+        if (Game.renderScale != 1)
+            this.canvas.getTransforms().add( new Scale(1 / Game.renderScale, 1 / Game.renderScale, 0, 0) );
         this.context = this.canvas.getGraphicsContext2D();
         root.getChildren().add(this.canvas);
 
         this.input = new Input(mainScene);
         this.group = new Group();
+        this.camera = new Camera(Game.windowWidth, Game.windowHeight);
 
         AnimationTimer gameloop = new AnimationTimer()
             {
@@ -104,17 +335,11 @@ public class Game extends Application
                     self.deltaTime = (currentTime - self.previousTime) / 1000000000.0;
                     self.previousTime = currentTime;
 
-                    // process input
-                    self.input.update();
-
-                    // update game state
-                    self.group.act(self.deltaTime);
-                    update(self.deltaTime);
+                    // process input and update game state
+                    self.advance(self.deltaTime);
 
                     // render objects to screen
-                    context.setFill(Color.GRAY);
-                    context.fillRect(0,0, 800,600);
-                    self.group.draw(self.context);
+                    self.render();
                 }
 
             };
@@ -0,0 +1,229 @@
+package net.stemkoski.bagel;
+
+import java.util.HashMap;
+import javafx.geometry.Bounds;
+import javafx.scene.SnapshotParameters;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.image.Image;
+import javafx.scene.image.WritableImage;
+import javafx.scene.paint.Color;
+import javafx.scene.text.Font;
+import javafx.scene.text.Text;
+import javafx.scene.text.TextAlignment;
+import javafx.scene.transform.Scale;
+
+/**
+ *  A set of characters drawn once into a single image (a bitmap font),
+ *  used to draw {@link Label} text that changes often, such as a score or a timer,
+ *  without drawing the text again each time it changes (see {@link Label#setGlyphAtlas(GlyphAtlas)}).
+ *  Characters are drawn with the font, color and border of a label at the time the atlas is created;
+ *  later changes to the label do not affect the atlas.
+ *  For example:
+ *  <pre>{@code
+ *  scoreLabel.setGlyphAtlas( new GlyphAtlas(scoreLabel, "Score: 0123456789") );
+ *  }</pre>
+ *  Characters are placed next to each other without kerning,
+ *  which suits digits and other characters of equal width.
+ */
+public class GlyphAtlas
+{
+	/**
+	 *  Location and size of a character in the atlas image.
+	 */
+	static class Glyph
+	{
+		// area of atlas image containing the character, in atlas image pixels
+		double imageLeft;
+		double imageWidth;
+		double imageHeight;
+
+		// position of the top-left corner of the character image, relative to the left end of the text baseline
+		double left;
+		double top;
+
+		/**
+		 * horizontal distance to the next character
+		 */
+		double advance;
+	}
+
+	/**
+	 * font used to draw the characters; null until first used if the label was created without a window
+	 * (see {@link #fontName} and {@link #fontSize})
+	 */
+	Font font;
+
+	/**
+	 * name and size of the font, used if the label had no font when the atlas was created
+	 */
+	String fontName;
+	int fontSize;
+
+	/**
+	 * color used to draw the characters
+	 */
+	Color fontColor;
+
+	/**
+	 * color of the border drawn around the characters, or null if no border is drawn
+	 */
+	Color borderColor;
+
+	/**
+	 * width of the border drawn around the characters
+	 */
+	int borderSize;
+
+	/**
+	 * the characters in this atlas
+	 */
+	String characters;
+
+	/**
+	 * location of each character in {@link #image}; null until the atlas image is created
+	 */
+	HashMap<Character, Glyph> glyphMap;
+
+	/**
+	 * image containing all characters, side by side
+	 */
+	Image image;
+
+	/**
+	 * number of image pixels per unit of screen coordinates (see {@link Game#renderScale})
+	 */
+	double scale;
+
+	/**
+	 * Create an atlas containing a set of characters, drawn with the current font, color and border of a label.
+	 * The atlas image is created when first used, since the JavaFX toolkit is required.
+	 * @param label label whose current appearance is used for the characters
+	 * @param characters the characters to include (for example, "0123456789")
+	 */
+	public GlyphAtlas(Label label, String characters)
+	{
+		this.font = label.font;
+		this.fontName = label.fontName;
+		this.fontSize = label.fontSize;
+		this.fontColor = label.fontColor;
+		this.borderColor = label.borderDraw ? label.borderColor : null;
+		this.borderSize = label.borderSize;
+		this.characters = characters;
+		this.glyphMap = null;
+		this.image = null;
+	}
+
+	/**
+	 * Draw each character into a separate image, and combine them into a single image.
+	 */
+	void createImage()
+	{
+		if (this.font == null)
+			this.font = AssetCache.getFont(this.fontName, this.fontSize);
+
+		this.glyphMap = new HashMap<Character, Glyph>();
+		this.scale = RenderState.screenScale;
+
+		SnapshotParameters parameters = new SnapshotParameters();
+		parameters.setFill(Color.TRANSPARENT);
+		parameters.setTransform( new Scale(this.scale, this.scale) );
+
+		int count = this.characters.length();
+		Image[] glyphImages = new Image[count];
+		int totalWidth = 0;
+		int maxHeight = 1;
+
+		for (int i = 0; i < count; i++)
+		{
+			char c = this.characters.charAt(i);
+			if ( this.glyphMap.containsKey(c) )
+				continue;
+
+			Text textNode = Label.createTextNode( String.valueOf(c), this.font, this.fontColor, 
+					TextAlignment.LEFT, this.borderColor, this.borderSize );
+			Bounds bounds = textNode.getBoundsInParent();
+			Image glyphImage = textNode.snapshot(parameters, null);
+			glyphImages[i] = glyphImage;
+
+			Glyph glyph = new Glyph();
+			glyph.imageLeft = totalWidth;
+			glyph.imageWidth = glyphImage.getWidth();
+			glyph.imageHeight = glyphImage.getHeight();
+			glyph.left = bounds.getMinX();
+			glyph.top = bounds.getMinY();
+			glyph.advance = textNode.getLayoutBounds().getWidth();
+			this.glyphMap.put(c, glyph);
+
+			// one pixel of empty space between characters, to prevent blending when drawn
+			totalWidth += (int)glyphImage.getWidth() + 1;
+			maxHeight = Math.max( maxHeight, (int)glyphImage.getHeight() );
+		}
+
+		WritableImage atlasImage = new WritableImage( Math.max(1, totalWidth), maxHeight );
+		for (int i = 0; i < count; i++)
+		{
+			Image glyphImage = glyphImages[i];
+			if (glyphImage == null)
+				continue;
+			Glyph glyph = this.glyphMap.get( this.characters.charAt(i) );
+			atlasImage.getPixelWriter().setPixels( (int)glyph.imageLeft, 0,
+					(int)glyph.imageWidth, (int)glyph.imageHeight, glyphImage.getPixelReader(), 0, 0 );
+		}
+		this.image = atlasImage;
+	}
+
+	/**
+	 * Determine if every character of a text is contained in this atlas.
+	 * @param text the text to check
+	 * @return true if every character is contained in this atlas
+	 */
+	public boolean contains(String text)
+	{
+		for (int i = 0; i < text.length(); i++)
+		{
+			if ( this.characters.indexOf( text.charAt(i) ) < 0 )
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Draw a single line of text using the characters in this atlas,
+	 * if every character of the text is contained in this atlas.
+	 * The transform of the context should already be set.
+	 * @param context object used to draw to canvas
+	 * @param text the text to draw
+	 * @param x x-coordinate of anchor of text
+	 * @param y y-coordinate of the text baseline
+	 * @param alignment alignment of the text with respect to the anchor
+	 * @return true if the text was drawn
+	 */
+	boolean drawText(GraphicsContext context, String text, double x, double y, TextAlignment alignment)
+	{
+		if ( !this.contains(text) )
+			return false;
+
+		if (this.glyphMap == null || this.scale != RenderState.screenScale)
+			this.createImage();
+
+		double width = 0;
+		for (int i = 0; i < text.length(); i++)
+			width += this.glyphMap.get( text.charAt(i) ).advance;
+
+		double left = x;
+		if (alignment == TextAlignment.CENTER)
+			left -= width / 2;
+		else if (alignment == TextAlignment.RIGHT)
+			left -= width;
+
+		for (int i = 0; i < text.length(); i++)
+		{
+			Glyph glyph = this.glyphMap.get( text.charAt(i) );
+			context.drawImage( this.image,
+					glyph.imageLeft, 0, glyph.imageWidth, glyph.imageHeight,
+					left + glyph.left, y + glyph.top, glyph.imageWidth / this.scale, glyph.imageHeight / this.scale );
+			left += glyph.advance;
+		}
+		return true;
+	}
+}
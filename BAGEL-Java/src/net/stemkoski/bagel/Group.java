@@ -1,7 +1,15 @@
 package net.stemkoski.bagel;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.BiConsumer;
 import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.image.Image;
 
 /**
  *  A collections of {@link Entity} objects.
@@ -19,6 +27,159 @@ public class Group extends Entity
      */
     public int count;
     
+    /**
+     *  Number of loops currently iterating over {@link #list}
+     *  (may be greater than 1 if loops are nested).
+     *  While positive, changes to the collection are stored in 
+     *  {@link #pendingAddList} and {@link #pendingRemoveList}, 
+     *  and applied once iteration is complete.
+     */
+    int iterationDepth;
+    
+    /**
+     *  Entity objects added while iterating, to be added to {@link #list} afterwards.
+     */
+    ArrayList<Entity> pendingAddList;
+    
+    /**
+     *  Entity objects removed while iterating, to be removed from {@link #list} afterwards.
+     */
+    ArrayList<Entity> pendingRemoveList;
+    
+    /**
+     *  Optional grid used to speed up overlap queries between the
+     *  {@link Sprite} objects in this collection; null unless
+     *  {@link #enableSpatialHash(double)} has been called.
+     */
+    SpatialHash spatialHash;
+    
+    /**
+     *  Number of Entity objects per task when running act methods of independent sprites
+     *  on several threads (see {@link #enableParallelAct(int)}); 0 if disabled.
+     */
+    int parallelChunkSize;
+    
+    /**
+     *  Determines if sprites are drawn in order of image (see {@link #setDrawSortedByImage(boolean)}).
+     */
+    boolean drawSortedByImage;
+    
+    /**
+     *  Entity objects in the order they are drawn, when sorted by layer or image;
+     *  null if it needs to be recreated from {@link #list}.
+     *  Entity objects are added to and removed from this list at the same time as {@link #list},
+     *  and moved into place when it is next sorted.
+     */
+    ArrayList<Entity> drawList;
+    
+    /**
+     *  Number of Entity objects added to this collection so far (see {@link Entity#containerIndex}).
+     */
+    int addCount;
+    
+    /**
+     *  Section assigned to sprites added to this collection (see {@link Entity#drawSegment});
+     *  increased each time an Entity that is not a Sprite is added.
+     */
+    int spriteSegment;
+    
+    /**
+     *  Number of Entity objects in this collection whose layer is not 0 (see {@link Entity#setLayer(int)}).
+     */
+    int layerCount;
+    
+    /**
+     *  Determines if the act methods of the Entity objects in this collection are currently running;
+     *  while true, sprites that move are not moved in the grid individually, 
+     *  since the whole grid is updated afterwards.
+     */
+    boolean acting;
+    
+    /**
+     *  Greatest distance by which a sprite in the grid, as drawn, extends beyond its boundary
+     *  (see {@link Sprite#getDrawMargin()}), plus 1; does not include the sprites in {@link #wideSpriteList}.
+     */
+    double drawMargin;
+    
+    /**
+     *  Sprites that, as drawn, extend beyond their boundaries by more than one grid cell 
+     *  (for example, a sprite moved a long distance in a single step); these are checked individually when drawing.
+     *  May contain sprites that have since been removed.
+     */
+    ArrayList<Sprite> wideSpriteList;
+    
+    /**
+     *  Entity objects in this collection that are not sprites, in the order they were added;
+     *  drawn in addition to the visible sprites found using the grid. Null if it needs to be recreated from {@link #list}.
+     */
+    ArrayList<Entity> otherEntityList;
+    
+    /**
+     *  Number of times this collection has been drawn using the grid for culling;
+     *  sprites that may be visible in the current frame are marked with this number
+     *  (see {@link Sprite#cullStamp}).
+     */
+    int cullStamp;
+    
+    /**
+     *  Area used to find sprites that may be visible; reused each frame.
+     */
+    Rectangle cullArea;
+    
+    /**
+     *  Sprites found using the grid in the current frame; reused each frame.
+     */
+    ArrayList<Sprite> cullList;
+    
+    /**
+     *  Entity objects drawn in the current frame, in drawing order, when using the grid; reused each frame.
+     */
+    ArrayList<Entity> visibleList;
+    
+    /**
+     *  Runs act method of independent sprites (see {@link Sprite#independent})
+     *  in a range of indices of a list, splitting the range into smaller tasks
+     *  that can be run on separate threads.
+     */
+    static class ParallelActTask extends RecursiveAction
+    {
+        private static final long serialVersionUID = 1L;
+        
+        ArrayList<Entity> list;
+        int start;
+        int end;
+        int chunkSize;
+        double deltaTime;
+        
+        ParallelActTask(ArrayList<Entity> list, int start, int end, int chunkSize, double deltaTime)
+        {
+            this.list = list;
+            this.start = start;
+            this.end = end;
+            this.chunkSize = chunkSize;
+            this.deltaTime = deltaTime;
+        }
+        
+        @Override
+        protected void compute()
+        {
+            if (this.end - this.start > this.chunkSize)
+            {
+                int middle = (this.start + this.end) / 2;
+                invokeAll( new ParallelActTask(this.list, this.start, middle, this.chunkSize, this.deltaTime),
+                           new ParallelActTask(this.list, middle, this.end, this.chunkSize, this.deltaTime) );
+                return;
+            }
+            
+            for (int i = this.start; i < this.end; i++)
+            {
+                Entity e = this.list.get(i);
+                if ( isIndependent(e) )
+                    e.act(this.deltaTime);
+            }
+        }
+    }
+    
     /**
      *  Initialize this object.
      */
@@ -26,28 +187,82 @@ public class Group extends Entity
     {
         this.list = new ArrayList<Entity>();
         this.count = 0;
+        this.iterationDepth = 0;
+        this.pendingAddList = new ArrayList<Entity>();
+        this.pendingRemoveList = new ArrayList<Entity>();
+        this.parallelChunkSize = 0;
+        this.drawSortedByImage = false;
+        this.drawList = null;
+        this.addCount = 0;
+        this.spriteSegment = 0;
+        this.layerCount = 0;
+        this.acting = false;
+        this.otherEntityList = null;
     }
 
     /**
      *  Add an {@link Entity} to this collection.
+     *  If called while this collection is being updated or drawn,
+     *  the Entity will be included starting with the next update.
+     *  May be called from the act method of an independent sprite (see {@link #enableParallelAct(int)}).
      *  @param e The Entity being added to this collection.
      */
-    public void addEntity(Entity e)
+    public synchronized void addEntity(Entity e)
     {
-        this.list.add(e);
+        // Entity objects are always added to the end of the list
+        e.containerIndex = this.addCount;
+        this.addCount++;
+        if (e instanceof Sprite)
+            e.drawSegment = this.spriteSegment;
+        else
+        {
+            e.drawSegment = this.spriteSegment + 1;
+            this.spriteSegment += 2;
+        }
+        if (e.layer != 0)
+            this.layerCount++;
+        
+        if (this.iterationDepth > 0)
+            this.pendingAddList.add(e);
+        else
+        {
+            this.list.add(e);
+            if (this.drawList != null)
+                this.drawList.add(e);
+        }
         e.container = this;
         this.count++;
+        if ( !(e instanceof Sprite) )
+            this.otherEntityList = null;
+        else if (this.spatialHash != null)
+            this.updateCell( (Sprite)e );
     }
 
     /**
      *  Remove an {@link Entity} from this collection.
+     *  If called while this collection is being updated or drawn,
+     *  the Entity is removed once the current update or draw is complete.
+     *  May be called from the act method of an independent sprite (see {@link #enableParallelAct(int)}).
      *  @param e The Entity being removed from this collection.
      */
-    public void removeEntity(Entity e)
+    public synchronized void removeEntity(Entity e)
     {
-        this.list.remove(e);
+        if (this.iterationDepth == 0)
+        {
+            this.list.remove(e);
+            if (this.drawList != null)
+                this.drawList.remove(e);
+        }
+        else if ( !this.pendingAddList.remove(e) )
+            this.pendingRemoveList.add(e);
+        if (e.container == this && e.layer != 0)
+            this.layerCount--;
         e.container = null;
         this.count--;
+        if ( !(e instanceof Sprite) )
+            this.otherEntityList = null;
+        else if (this.spatialHash != null)
+            this.spatialHash.remove( (Sprite)e );
     }
     
     /**
@@ -59,7 +274,17 @@ public class Group extends Entity
      */
     public ArrayList<Entity> list()
     {
-        return new ArrayList<Entity>(list);   
+        ArrayList<Entity> listCopy = new ArrayList<Entity>(list);
+        
+        // include changes that have not yet been applied
+        if ( this.hasPendingChanges() )
+        {
+            for (Entity e : this.pendingRemoveList)
+                listCopy.remove(e);
+            listCopy.addAll(this.pendingAddList);
+        }
+        
+        return listCopy;
     }
 
     /**
@@ -69,25 +294,628 @@ public class Group extends Entity
      */
     public Entity get(int index)
     {
-    	return this.list().get(index);
+        if ( this.hasPendingChanges() )
+            return this.list().get(index);
+        else
+            return this.list.get(index);
+    }
+    
+    /**
+     *  Determine if there are additions or removals waiting to be applied to {@link #list}.
+     *  @return true if there are changes waiting to be applied
+     */
+    boolean hasPendingChanges()
+    {
+        return !this.pendingAddList.isEmpty() || !this.pendingRemoveList.isEmpty();
+    }
+    
+    /**
+     *  Start a loop over {@link #list}; until the matching {@link #endIteration()},
+     *  additions and removals are stored rather than applied,
+     *  so that the list can be iterated directly instead of copied.
+     */
+    void beginIteration()
+    {
+        this.iterationDepth++;
+    }
+    
+    /**
+     *  End a loop over {@link #list}; once all loops are complete,
+     *  any stored additions and removals are applied.
+     */
+    void endIteration()
+    {
+        this.iterationDepth--;
+        if (this.iterationDepth > 0 || !this.hasPendingChanges())
+            return;
+        
+        if (this.pendingRemoveList.size() == 1)
+        {
+            this.list.remove( this.pendingRemoveList.get(0) );
+            if (this.drawList != null)
+                this.drawList.remove( this.pendingRemoveList.get(0) );
+        }
+        else if (this.pendingRemoveList.size() > 1)
+        {
+            // remove all in a single pass
+            Set<Entity> removeSet = Collections.newSetFromMap( new IdentityHashMap<Entity, Boolean>() );
+            removeSet.addAll(this.pendingRemoveList);
+            this.list.removeIf( removeSet::contains );
+            if (this.drawList != null)
+                this.drawList.removeIf( removeSet::contains );
+        }
+        this.list.addAll(this.pendingAddList);
+        if (this.drawList != null)
+            this.drawList.addAll(this.pendingAddList);
+        this.otherEntityList = null;
+        
+        this.pendingRemoveList.clear();
+        this.pendingAddList.clear();
     }
     
     /**
      *  Render all Entity objects in this collection to a canvas.
+     *  Entity objects are drawn in order of {@link Entity#layer} (lowest first),
+     *  and otherwise in the order they were added (see also {@link #setDrawSortedByImage(boolean)}).
+     *  Sprites outside of the visible area of the game world (see {@link Camera}) are not drawn;
+     *  if this collection uses a grid (see {@link #enableSpatialHash(double)}),
+     *  only the sprites found near the visible area using the grid are checked and drawn.
      */
     void draw(GraphicsContext context)
     {
-        for ( Entity e : this.list() )
-            e.draw(context);
+        Rectangle view = RenderState.viewBoundary;
+        boolean useGrid = (view != null && this.spatialHash != null);
+        
+        ArrayList<Entity> entityList = this.list;
+        if (useGrid)
+            entityList = this.getVisibleList(view);
+        else if ( this.drawSortedByImage || this.hasLayers() )
+            entityList = this.getDrawList();
+        
+        this.beginIteration();
+        try
+        {
+            for (int i = 0; i < entityList.size(); i++)
+            {
+                Entity e = entityList.get(i);
+                if ( !useGrid && view != null && e instanceof Sprite && ((Sprite)e).isOutside(view) )
+                    continue;
+                e.draw(context);
+            }
+        }
+        finally
+        {
+            this.endIteration();
+        }
+    }
+    
+    /**
+     *  Get the Entity objects to draw in the visible area, in drawing order, using the grid:
+     *  the sprites near the visible area that are not outside of it, and all Entity objects that are not sprites.
+     *  The area searched is larger than the visible area by the greatest distance a sprite, as drawn,
+     *  extends beyond its boundary (see {@link #drawMargin}), so that no visible sprite is missed;
+     *  sprites that extend further than one grid cell are checked individually (see {@link #wideSpriteList}).
+     *  @param view the visible area of the game world
+     *  @return list of Entity objects to draw, in the order they should be drawn
+     */
+    ArrayList<Entity> getVisibleList(Rectangle view)
+    {
+        if (this.visibleList == null)
+        {
+            this.cullArea = new Rectangle();
+            this.cullList = new ArrayList<Sprite>();
+            this.visibleList = new ArrayList<Entity>();
+        }
+        
+        this.cullStamp++;
+        this.visibleList.clear();
+        
+        double margin = this.drawMargin;
+        this.cullArea.setValues( view.left - margin, view.top - margin, 
+                                 view.width + 2 * margin, view.height + 2 * margin );
+        this.cullList.clear();
+        this.spatialHash.queryOverlapping(this.cullArea, null, this.cullList);
+        
+        for (int i = 0; i < this.cullList.size(); i++)
+        {
+            Sprite sprite = this.cullList.get(i);
+            sprite.cullStamp = this.cullStamp;
+            if ( !sprite.isOutside(view) )
+                this.visibleList.add(sprite);
+        }
+        this.cullList.clear();
+        
+        for (int i = 0; i < this.wideSpriteList.size(); i++)
+        {
+            Sprite sprite = this.wideSpriteList.get(i);
+            if (sprite.container != this || sprite.cullStamp == this.cullStamp)
+                continue;
+            sprite.cullStamp = this.cullStamp;
+            if ( !sprite.isOutside(view) )
+                this.visibleList.add(sprite);
+        }
+        
+        this.visibleList.addAll( this.getOtherEntityList() );
+        
+        if (this.drawSortedByImage)
+        {
+            for (int i = 0; i < this.visibleList.size(); i++)
+                updateImageKey( this.visibleList.get(i) );
+        }
+        
+        // same order as getDrawList(), or as list if there are no layers and sprites are not sorted by image
+        this.visibleList.sort( this::compareDrawOrder );
+        return this.visibleList;
+    }
+    
+    /**
+     *  Get the Entity objects in this collection that are not sprites, in the order they were added.
+     *  @return list of Entity objects that are not sprites
+     */
+    ArrayList<Entity> getOtherEntityList()
+    {
+        if (this.otherEntityList == null)
+        {
+            this.otherEntityList = new ArrayList<Entity>();
+            for (int i = 0; i < this.list.size(); i++)
+            {
+                Entity e = this.list.get(i);
+                if ( !(e instanceof Sprite) )
+                    this.otherEntityList.add(e);
+            }
+        }
+        return this.otherEntityList;
+    }
+    
+    /**
+     *  Set whether consecutive sprites in this collection are drawn in order of the image 
+     *  used by their texture, rather than in the order they were added; false by default.
+     *  Drawing many sprites that use the same image one after another is faster
+     *  than switching between images, particularly for textures created by a {@link TextureAtlas}.
+     *  <br>
+     *  Sprites that use different images may be drawn in a different order,
+     *  and so may overlap differently; sprites that use the same image are drawn in the order they were added.
+     *  Other Entity objects (such as a {@link TileMap}, {@link Label}, or Group)
+     *  are drawn in their usual place: sprites are never moved before or after them.
+     *  Sprites are only reordered within the same layer (see {@link Entity#layer}).
+     *  @param sorted whether sprites are drawn in order of image
+     */
+    public void setDrawSortedByImage(boolean sorted)
+    {
+        this.drawSortedByImage = sorted;
+        this.drawList = null;
+    }
+    
+    /**
+     *  Determine if any Entity object in this collection has a layer other than 0.
+     *  @return true if any Entity object has a layer other than 0
+     */
+    boolean hasLayers()
+    {
+        return this.layerCount > 0;
+    }
+    
+    /**
+     *  Update the number of Entity objects with a layer other than 0,
+     *  when the layer of an Entity in this collection is changed (see {@link Entity#setLayer(int)}).
+     *  @param oldLayer the previous layer of the Entity
+     *  @param newLayer the new layer of the Entity
+     */
+    synchronized void layerChanged(int oldLayer, int newLayer)
+    {
+        if (oldLayer == 0 && newLayer != 0)
+            this.layerCount++;
+        else if (oldLayer != 0 && newLayer == 0)
+            this.layerCount--;
+    }
+    
+    /**
+     *  Get the Entity objects in this collection in the order they should be drawn
+     *  (see {@link #compareDrawOrder(Entity, Entity)}).
+     *  The order is stored between frames, and Entity objects added since the previous frame 
+     *  are moved into place; since layers and images rarely change, normally few Entity objects need to be moved.
+     *  @return list of Entity objects in the order they should be drawn
+     */
+    ArrayList<Entity> getDrawList()
+    {
+        // image keys are only looked up for sprites whose image has changed
+        if (this.drawSortedByImage)
+        {
+            for (int i = 0; i < this.list.size(); i++)
+                updateImageKey( this.list.get(i) );
+        }
+        
+        if (this.drawList == null)
+        {
+            this.drawList = new ArrayList<Entity>(this.list);
+            this.drawList.sort( this::compareDrawOrder );
+        }
+        else if ( !this.insertionSort(this.drawList) )
+        {
+            // too many changes for insertion sort
+            this.drawList.sort( this::compareDrawOrder );
+        }
+        
+        return this.drawList;
+    }
+    
+    /**
+     *  Compare the order in which two Entity objects should be drawn:
+     *  by layer, then by image (if {@link #drawSortedByImage} is true, 
+     *  for sprites that are not separated by other Entity objects), 
+     *  then by the order in which they were added.
+     *  @param a the first Entity
+     *  @param b the second Entity
+     *  @return a negative number, zero, or a positive number 
+     *    if the first Entity should be drawn before, at the same time as, or after the second Entity
+     */
+    int compareDrawOrder(Entity a, Entity b)
+    {
+        int result = Integer.compare(a.layer, b.layer);
+        if (result != 0)
+            return result;
+        
+        if (this.drawSortedByImage)
+        {
+            result = Integer.compare(a.drawSegment, b.drawSegment);
+            if (result != 0)
+                return result;
+            
+            result = Integer.compare(a.imageKey, b.imageKey);
+            if (result != 0)
+                return result;
+        }
+        
+        return Integer.compare(a.containerIndex, b.containerIndex);
+    }
+    
+    /**
+     *  Sort a list into drawing order (see {@link #compareDrawOrder(Entity, Entity)}),
+     *  moving each Entity backwards until it follows an Entity that is drawn before it.
+     *  Takes very little time if the list is already almost sorted;
+     *  stops early if too many Entity objects need to be moved.
+     *  @param entityList list containing the Entity objects to sort
+     *  @return true if the list was sorted, false if stopped early
+     */
+    boolean insertionSort(ArrayList<Entity> entityList)
+    {
+        int size = entityList.size();
+        long moveLimit = 8L * size + 64;
+        long moveCount = 0;
+        
+        for (int i = 1; i < size; i++)
+        {
+            Entity e = entityList.get(i);
+            int j = i - 1;
+            if ( this.compareDrawOrder(entityList.get(j), e) <= 0 )
+                continue;
+            
+            while ( j >= 0 && this.compareDrawOrder(entityList.get(j), e) > 0 )
+            {
+                entityList.set( j + 1, entityList.get(j) );
+                j--;
+                moveCount++;
+            }
+            entityList.set(j + 1, e);
+            
+            if (moveCount > moveLimit)
+                return false;
+        }
+        return true;
+    }
+    
+    /**
+     *  Numbers identifying each image used to draw sprites (see {@link #getImageKey(Image)}),
+     *  assigned in the order images are first drawn; images that are no longer used are removed automatically.
+     */
+    private static WeakHashMap<Image, Integer> imageKeyMap = new WeakHashMap<Image, Integer>();
+    
+    /**
+     *  Number of images that have been assigned a number in {@link #imageKeyMap}.
+     */
+    private static int imageKeyCount = 0;
+    
+    /**
+     *  Get a number identifying an image used to draw sprites;
+     *  the same image always has the same number, and different images have different numbers.
+     *  @param image the image to identify; may be null
+     *  @return a number identifying the image, or 0 if image is null
+     */
+    static int getImageKey(Image image)
+    {
+        if (image == null)
+            return 0;
+        
+        // Image does not override equals, so images are compared by identity
+        synchronized (imageKeyMap)
+        {
+            Integer key = imageKeyMap.get(image);
+            if (key == null)
+            {
+                imageKeyCount++;
+                key = imageKeyCount;
+                imageKeyMap.put(image, key);
+            }
+            return key;
+        }
+    }
+    
+    /**
+     *  Store the number identifying the image currently used to draw an Entity in {@link Entity#imageKey},
+     *  so that it can be compared without looking it up again; 
+     *  the number is only looked up when a sprite starts using a different image.
+     *  @param e the Entity to update
+     */
+    static void updateImageKey(Entity e)
+    {
+        if ( !(e instanceof Sprite) )
+            return;
+        
+        Sprite sprite = (Sprite)e;
+        Image image = (sprite.texture == null) ? null : sprite.texture.image;
+        if (image != sprite.imageKeyImage)
+        {
+            sprite.imageKeyImage = image;
+            sprite.imageKey = getImageKey(image);
+        }
     }
     
+    
     /**
      *  Runs act method of all objects in this collection.
+     *  If enabled with {@link #enableParallelAct(int)}, independent sprites are updated first
+     *  (on several threads), followed by all other objects in this collection (in order);
+     *  this method does not return until all objects have been updated.
      */
     @Override
     void act(double deltaTime)
     {
-        for ( Entity e : this.list() )
-            e.act(deltaTime);
+        this.beginIteration();
+        this.acting = true;
+        try
+        {
+            int size = this.list.size();
+            if (this.parallelChunkSize > 0 && size > this.parallelChunkSize)
+            {
+                // waits until all tasks have finished
+                ForkJoinPool.commonPool().invoke(
+                    new ParallelActTask(this.list, 0, size, this.parallelChunkSize, deltaTime) );
+                
+                for (int i = 0; i < size; i++)
+                {
+                    Entity e = this.list.get(i);
+                    if ( !isIndependent(e) )
+                        e.act(deltaTime);
+                }
+            }
+            else
+            {
+                for (int i = 0; i < this.list.size(); i++)
+                    this.list.get(i).act(deltaTime);
+            }
+        }
+        finally
+        {
+            this.acting = false;
+            this.endIteration();
+        }
+        
+        if (this.spatialHash != null)
+            this.updateSpatialHash();
+    }
+    
+    /**
+     *  Determine if an Entity may be updated at the same time as other independent sprites.
+     *  @param e the Entity to check
+     *  @return true if the Entity is a Sprite with {@link Sprite#independent} set to true
+     */
+    static boolean isIndependent(Entity e)
+    {
+        return (e instanceof Sprite) && ((Sprite)e).independent;
+    }
+    
+    /**
+     *  Run the act methods of independent sprites in this collection (see {@link Sprite#independent})
+     *  on several threads at the same time, which is useful for collections containing
+     *  thousands of sprites with physics, animations, or actions.
+     *  Each update of this collection first divides the collection into groups of
+     *  chunkSize objects, and updates the independent sprites in each group on a separate thread
+     *  (using the common {@link ForkJoinPool}); once all of them have been updated,
+     *  all other objects are updated in order on the game thread,
+     *  before {@link Game#update(double)} is called and before anything is drawn.
+     *  <br>
+     *  Sprites added while updating are included starting with the next update, as usual.
+     *  Collections with no more than chunkSize objects are updated on the game thread only.
+     *  @param chunkSize number of objects updated by each task; typically 256 to 4096
+     */
+    public void enableParallelAct(int chunkSize)
+    {
+        this.parallelChunkSize = Math.max(1, chunkSize);
+    }
+    
+    /**
+     *  Run the act methods of all objects in this collection in order, on the game thread (the default).
+     */
+    public void disableParallelAct()
+    {
+        this.parallelChunkSize = 0;
+    }
+    
+    /**
+     *  Runs savePreviousState method of all objects in this collection.
+     */
+    @Override
+    void savePreviousState()
+    {
+        for (int i = 0; i < this.list.size(); i++)
+            this.list.get(i).savePreviousState();
+    }
+    
+    /**
+     *  Store the {@link Sprite} objects in this collection in a grid
+     *  (see {@link SpatialHash}), so that {@link #queryOverlapping(Sprite)} and
+     *  {@link #forEachOverlappingPair(Group, BiConsumer)} only check sprites that are nearby,
+     *  and so that only sprites near the visible area are checked when drawing.
+     *  The grid is updated automatically after each {@link #act(double)}, and whenever
+     *  a sprite is moved or resized by a method of the {@link Sprite} class (such as {@link Sprite#setPosition(double, double)});
+     *  after changing the position or size of a sprite directly (for example, <code>sprite.x = 100;</code>)
+     *  at any other time, call {@link #updateSpatialHash()}. Entity objects in nested groups are not included.
+     *  @param cellSize width and height of each grid cell;
+     *    typically one to two times the size of the sprites in this collection
+     */
+    public void enableSpatialHash(double cellSize)
+    {
+        this.spatialHash = new SpatialHash(cellSize);
+        this.wideSpriteList = new ArrayList<Sprite>();
+        this.updateSpatialHash();
+    }
+    
+    /**
+     *  Stop using a grid for overlap queries in this collection.
+     */
+    public void disableSpatialHash()
+    {
+        this.spatialHash = null;
+        this.wideSpriteList = null;
+    }
+    
+    /**
+     *  Move each {@link Sprite} in this collection to the grid cells
+     *  covered by its current position. Called automatically after {@link #act(double)};
+     *  call this method directly after repositioning sprites 
+     *  if overlap queries are needed before the next iteration of the game loop.
+     */
+    public void updateSpatialHash()
+    {
+        if (this.spatialHash == null)
+            return;
+        
+        // extra distance of 1 includes sprites whose edges touch the visible area
+        this.drawMargin = 1;
+        this.wideSpriteList.clear();
+        
+        for ( Entity e : this.list )
+        {
+            if (e instanceof Sprite)
+                this.updateCell( (Sprite)e );
+        }
+    }
+    
+    /**
+     *  Move a sprite to the grid cells covered by its current position,
+     *  and include the distance it extends beyond its boundary when drawn in {@link #drawMargin}.
+     *  @param sprite a sprite in this collection
+     */
+    void updateCell(Sprite sprite)
+    {
+        this.spatialHash.update(sprite);
+        
+        double margin = sprite.getDrawMargin() + 1;
+        if (margin <= this.spatialHash.cellSize)
+            this.drawMargin = Math.max(this.drawMargin, margin);
+        else if ( this.wideSpriteList.isEmpty() || this.wideSpriteList.get(this.wideSpriteList.size() - 1) != sprite )
+            this.wideSpriteList.add(sprite);
+    }
+    
+    /**
+     *  Keep the grid up to date when a sprite in this collection is moved or resized (see {@link Sprite#moved()}).
+     *  Sprites moved during {@link #act(double)} are not changed individually, 
+     *  since the whole grid is updated afterwards.
+     *  @param sprite the sprite that has moved
+     */
+    void spriteMoved(Sprite sprite)
+    {
+        if (this.spatialHash != null && !this.acting)
+            this.updateCell(sprite);
+    }
+    
+    /**
+     *  Find all {@link Sprite} objects in this collection that overlap a given sprite.
+     *  Uses the grid from {@link #enableSpatialHash(double)} if available,
+     *  otherwise checks every sprite in this collection.
+     *  @param sprite the sprite to check for overlap with
+     *  @return list of sprites in this collection that overlap the given sprite 
+     *    (not including the given sprite itself)
+     */
+    public ArrayList<Sprite> queryOverlapping(Sprite sprite)
+    {
+        ArrayList<Sprite> resultList = new ArrayList<Sprite>();
+        this.queryOverlapping(sprite, resultList);
+        return resultList;
+    }
+    
+    /**
+     *  Find all {@link Sprite} objects in this collection that overlap a given sprite,
+     *  and add them to a list; the same list may be reused for many queries, to avoid creating new lists.
+     *  Uses the grid from {@link #enableSpatialHash(double)} if available,
+     *  otherwise checks every sprite in this collection.
+     *  @param sprite the sprite to check for overlap with
+     *  @param resultList list that sprites in this collection that overlap the given sprite
+     *    (not including the given sprite itself) are added to; existing contents are not removed
+     */
+    public void queryOverlapping(Sprite sprite, ArrayList<Sprite> resultList)
+    {
+        if (this.spatialHash != null)
+        {
+            this.spatialHash.queryOverlapping( sprite.getBoundary(), sprite, resultList );
+        }
+        else
+        {
+            // include changes that have not yet been applied
+            ArrayList<Entity> entityList = this.hasPendingChanges() ? this.list() : this.list;
+            for ( Entity e : entityList )
+            {
+                if ( e != sprite && e instanceof Sprite && sprite.isOverlapping( (Sprite)e ) )
+                    resultList.add( (Sprite)e );
+            }
+        }
+    }
+    
+    /**
+     *  Run a function on every pair of overlapping sprites, where the first sprite
+     *  is contained in this collection and the second sprite is contained in other collection.
+     *  For example:
+     *  <pre>{@code
+     *  laserGroup.forEachOverlappingPair( rockGroup, (laser, rock) ->
+     *  {
+     *      laser.remove();
+     *      rock.remove();
+     *  });
+     *  }</pre>
+     *  Sprites may be safely added or removed by the function;
+     *  sprites removed from either collection are not included in any later pairs.
+     *  Uses the grid of other collection (see {@link #enableSpatialHash(double)}) if available.
+     *  @param other collection containing the second sprite of each pair; should be different from this collection
+     *  @param pairFunction function to run on each pair of overlapping sprites
+     */
+    public void forEachOverlappingPair(Group other, BiConsumer<Sprite, Sprite> pairFunction)
+    {
+        // reused for each sprite in this collection
+        ArrayList<Sprite> overlapList = new ArrayList<Sprite>();
+        
+        this.beginIteration();
+        try
+        {
+            for (int i = 0; i < this.list.size(); i++)
+            {
+                Entity e = this.list.get(i);
+                if ( !(e instanceof Sprite) || e.container != this )
+                    continue;
+                
+                Sprite sprite = (Sprite)e;
+                overlapList.clear();
+                other.queryOverlapping(sprite, overlapList);
+                for (int j = 0; j < overlapList.size(); j++)
+                {
+                    Sprite otherSprite = overlapList.get(j);
+                    if (otherSprite.container == other && sprite.container == this)
+                        pairFunction.accept(sprite, otherSprite);
+                }
+            }
+        }
+        finally
+        {
+            this.endIteration();
+        }
     }
 }
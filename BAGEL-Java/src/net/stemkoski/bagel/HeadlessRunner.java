@@ -0,0 +1,286 @@
+package net.stemkoski.bagel;
+
+import javafx.scene.canvas.GraphicsContext;
+
+/**
+ *  Runs a {@link Game} without creating a window,
+ *  for automated testing, benchmarking, or server-side simulation.
+ *  Calls {@link Game#create()} once, and then for each frame
+ *  updates {@link Input}, runs {@link Group#act(double)} and {@link Game#update(double)}
+ *  in a plain loop, either as quickly as possible or at a target rate.
+ *  <br><br>
+ *  By default, nothing is drawn and the JavaFX toolkit is not required:
+ *  images, fonts, and audio are not loaded
+ *  (image dimensions are still read from files, so sprite sizes are correct).
+ *  This only applies while the runner is creating or running the game, so other games
+ *  in the same program load assets as usual; assets loaded in the background
+ *  (see {@link AssetLoader}) should be finished before the run ends.
+ *  Keyboard and mouse input may be supplied by an {@link InputSource}. For example:
+ *  <pre>{@code
+ *  HeadlessRunner runner = new HeadlessRunner( new SpaceRocks() );
+ *  runner.setInputSource( (input, frameNumber) ->
+ *  {
+ *      if (frameNumber == 0)
+ *          input.pressKey("UP");
+ *  });
+ *  runner.run(10000, 1/60.0);
+ *  }</pre>
+ */
+public class HeadlessRunner
+{
+	/**
+	 *  Supplies keyboard and mouse events to an {@link Input} object before each frame,
+	 *  using methods such as {@link Input#pressKey(String)} and {@link Input#releaseKey(String)}.
+	 */
+	public interface InputSource
+	{
+		/**
+		 * @param input the Input object used by the game
+		 * @param frameNumber number of frames that have been run so far
+		 */
+		void supplyInput(Input input, long frameNumber);
+	}
+
+	/**
+	 * the game being run
+	 */
+	Game game;
+
+	/**
+	 * supplies input events before each frame; may be null
+	 */
+	InputSource inputSource;
+
+	/**
+	 * number of frames that have been run so far
+	 */
+	long frameNumber;
+
+	/**
+	 * determines if {@link Game#create()} has been called
+	 */
+	boolean created;
+
+	/**
+	 * determines if images, fonts and audio are not loaded while the game is created or run
+	 * (see {@link Game#headless}); true when there is no canvas to draw to
+	 */
+	boolean headless;
+
+	/**
+	 * value of {@link Game#headless} before this runner began creating or running the game;
+	 * restored afterwards, so that other games in the same program are not affected
+	 */
+	boolean previousHeadless;
+
+	/**
+	 * number of methods of this runner currently in progress that have set {@link Game#headless}
+	 */
+	int headlessDepth;
+
+	/**
+	 * Prepare a game to be run without a window; nothing is drawn.
+	 * Images, fonts and audio loaded by the game while it is created or run by this runner
+	 * are not loaded.
+	 * @param game the game to run
+	 */
+	public HeadlessRunner(Game game)
+	{
+		this(game, null);
+	}
+
+	/**
+	 * Prepare a game to be run without a window, drawing each frame to an offscreen canvas.
+	 * Since images are drawn, the JavaFX toolkit must be available.
+	 * @param game the game to run
+	 * @param context object used to draw to an offscreen canvas; if null, nothing is drawn.
+	 *   The canvas size should be the window size multiplied by {@link Game#renderScale}.
+	 */
+	public HeadlessRunner(Game game, GraphicsContext context)
+	{
+		this.game = game;
+		this.game.context = context;
+		this.headless = (context == null);
+		this.headlessDepth = 0;
+		this.inputSource = null;
+		this.frameNumber = 0;
+		this.created = false;
+	}
+
+	/**
+	 * Set the object that supplies keyboard and mouse events before each frame.
+	 * @param inputSource the object that supplies input events
+	 */
+	public void setInputSource(InputSource inputSource)
+	{
+		this.inputSource = inputSource;
+	}
+
+	/**
+	 * Set {@link Game#headless} for this runner, storing the previous value;
+	 * must be followed by {@link #endHeadless()}.
+	 */
+	void beginHeadless()
+	{
+		if (this.headlessDepth == 0)
+		{
+			this.previousHeadless = Game.headless;
+			Game.headless = this.headless;
+		}
+		this.headlessDepth++;
+	}
+
+	/**
+	 * Restore the value of {@link Game#headless} stored by {@link #beginHeadless()}.
+	 */
+	void endHeadless()
+	{
+		this.headlessDepth--;
+		if (this.headlessDepth == 0)
+			Game.headless = this.previousHeadless;
+	}
+
+	/**
+	 * Initialize the Input, Group and Camera objects and call {@link Game#create()}.
+	 * Called automatically the first time that frames are run.
+	 */
+	public void create()
+	{
+		if (this.created)
+			return;
+
+		this.beginHeadless();
+		try
+		{
+			this.game.input = new Input();
+			this.game.group = new Group();
+			this.game.camera = new Camera(Game.windowWidth, Game.windowHeight);
+			this.game.create();
+			this.created = true;
+		}
+		finally
+		{
+			this.endHeadless();
+		}
+	}
+
+	/**
+	 * Run a single frame of the game: supply input, update the game state,
+	 * and draw (if a canvas was provided).
+	 * @param deltaTime amount of time that has passed since the previous frame
+	 */
+	public void runFrame(double deltaTime)
+	{
+		this.beginHeadless();
+		try
+		{
+			this.create();
+
+			if (this.inputSource != null)
+				this.inputSource.supplyInput(this.game.input, this.frameNumber);
+
+			this.game.deltaTime = deltaTime;
+			this.game.advance(deltaTime);
+
+			if (this.game.context != null)
+				this.game.render();
+
+			this.frameNumber++;
+		}
+		finally
+		{
+			this.endHeadless();
+		}
+	}
+
+	/**
+	 * Run frames as quickly as possible,
+	 * each simulating the same amount of time, so that results are repeatable.
+	 * @param frameCount number of frames to run
+	 * @param deltaTime amount of time simulated by each frame (for example, 1/60.0)
+	 */
+	public void run(long frameCount, double deltaTime)
+	{
+		this.beginHeadless();
+		try
+		{
+			for (long n = 0; n < frameCount; n++)
+				this.runFrame(deltaTime);
+		}
+		finally
+		{
+			this.endHeadless();
+		}
+	}
+
+	/**
+	 * Run frames at a target rate, waiting between frames when necessary;
+	 * each frame simulates the actual amount of time that has passed since the previous frame.
+	 * @param frameCount number of frames to run
+	 * @param framesPerSecond target number of frames per second
+	 */
+	public void runAtRate(long frameCount, double framesPerSecond)
+	{
+		long frameNanos = (long)(1000000000.0 / framesPerSecond);
+		long previousTime = System.nanoTime();
+		long nextFrameTime = previousTime + frameNanos;
+
+		for (long n = 0; n < frameCount; n++)
+		{
+			long waitNanos = nextFrameTime - System.nanoTime();
+			if (waitNanos > 0)
+			{
+				try
+				{
+					Thread.sleep(waitNanos / 1000000, (int)(waitNanos % 1000000));
+				}
+				catch (InterruptedException error)
+				{
+					Thread.currentThread().interrupt();
+					return;
+				}
+			}
+
+			long currentTime = System.nanoTime();
+			this.runFrame( (currentTime - previousTime) / 1000000000.0 );
+			previousTime = currentTime;
+			nextFrameTime += frameNanos;
+
+			// fell behind; do not try to catch up with several quick frames
+			if (nextFrameTime < currentTime)
+				nextFrameTime = currentTime + frameNanos;
+		}
+	}
+
+	/**
+	 * Run frames until all frames recorded by an {@link InputRecorder} have been replayed,
+	 * using the recorded input events and frame times.
+	 * @param replay the recorded frames to run
+	 */
+	public void runReplay(InputReplay replay)
+	{
+		this.create();
+		this.game.setInputReplay(replay);
+		while ( !replay.isFinished() )
+			this.runFrame(0);
+		this.game.setInputReplay(null);
+	}
+
+	/**
+	 * Get the number of frames that have been run so far.
+	 * @return the number of frames that have been run so far
+	 */
+	public long getFrameNumber()
+	{
+		return this.frameNumber;
+	}
+
+	/**
+	 * Get the game being run.
+	 * @return the game being run
+	 */
+	public Game getGame()
+	{
+		return this.game;
+	}
+}
@@ -1,23 +1,67 @@
 package net.stemkoski.bagel;
 
 import javafx.scene.Scene;
+import javafx.scene.input.KeyCode;
 import javafx.scene.input.KeyEvent;
 import javafx.scene.input.MouseEvent;
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
 
 /**
  * A structure for storing and updating the state of 
  *  hardware input devices (keyboard and mouse).
  *  Handles key down/press/up events, 
  *  mouse down/up events, and mouse position. 
+ *  Keys may be specified by {@link KeyCode} or by name (the KeyCode constant name, such as "LEFT");
+ *  the state of each key is stored as one bit, indexed by KeyCode ordinal,
+ *  so that checking a key does not search a list.
+ *  <br><br>
+ *  Instead of checking keys during each update, handlers may be bound to keys
+ *  and to the mouse button once; each update only runs the handlers of keys that changed
+ *  or are being held, so the cost does not depend on the total number of handlers. For example:
+ *  <pre>{@code
+ *  // in create()
+ *  input.whileKeyPressed( "LEFT", (deltaTime) -> spaceship.rotateBy(-2) );
+ *  input.onKeyDown( "SPACE", (deltaTime) -> fireLaser() );
+ *  }</pre>
  */
 public class Input
 {
-    ArrayList<String> keyDownQueue;
-    ArrayList<String> keyUpQueue;
-    ArrayList<String> keyDownList;
-    ArrayList<String> keyPressedList;
-    ArrayList<String> keyUpList;
+    /**
+     *  A method run when a key or mouse button event occurs (see {@link Input#onKeyDown(KeyCode, Handler)}).
+     */
+    public interface Handler
+    {
+        /**
+         * @param deltaTime elapsed time (seconds) simulated by the current update
+         */
+        void handle(double deltaTime);
+    }
+
+    /**
+     * all key codes, indexed by ordinal
+     */
+    static final KeyCode[] KEY_CODES = KeyCode.values();
+
+    /**
+     * key codes indexed by name (examples: "LEFT", "A", "DIGIT1", "SPACE", "SHIFT")
+     */
+    static final HashMap<String, KeyCode> KEY_CODE_MAP = new HashMap<String, KeyCode>();
+
+    static
+    {
+        for (KeyCode code : KEY_CODES)
+            KEY_CODE_MAP.put(code.name(), code);
+    }
+
+    // sets of key codes, indexed by ordinal
+
+    BitSet keyDownQueue;
+    BitSet keyUpQueue;
+    BitSet keyDownSet;
+    BitSet keyPressedSet;
+    BitSet keyUpSet;
 
     boolean mouseButtonDownQueue;
     boolean mouseButtonUpQueue;
@@ -26,53 +70,173 @@ public class Input
     
     double mouseX;
     double mouseY;
+
+    // camera used to convert the mouse position to game world coordinates; set by Game each step,
+    // null if game world coordinates are the same as screen coordinates
+    Camera camera;
+
+    // handlers bound to each key, indexed by ordinal; entries are null if no handlers are bound.
+    // lists are replaced (rather than changed) when handlers are added or removed,
+    // so that handlers may be added or removed by other handlers
+
+    ArrayList<ArrayList<Handler>> keyDownHandlers;
+    ArrayList<ArrayList<Handler>> keyPressedHandlers;
+    ArrayList<ArrayList<Handler>> keyUpHandlers;
+
+    ArrayList<Handler> mouseButtonDownHandlers;
+    ArrayList<Handler> mouseButtonUpHandlers;
     
+    /**
+     * Initialize object without event listeners;
+     * events are supplied by the methods {@link #pressKey(String)}, {@link #releaseKey(String)}, etc.
+     * Used when running without a window (see {@link HeadlessRunner}).
+     */
+    Input()
+    {
+        keyDownQueue  = new BitSet(KEY_CODES.length);
+        keyUpQueue    = new BitSet(KEY_CODES.length);
+        keyDownSet    = new BitSet(KEY_CODES.length);
+        keyPressedSet = new BitSet(KEY_CODES.length);
+        keyUpSet      = new BitSet(KEY_CODES.length);
+
+        keyDownHandlers    = new ArrayList<ArrayList<Handler>>();
+        keyPressedHandlers = new ArrayList<ArrayList<Handler>>();
+        keyUpHandlers      = new ArrayList<ArrayList<Handler>>();
+        for (int i = 0; i < KEY_CODES.length; i++)
+        {
+            keyDownHandlers.add(null);
+            keyPressedHandlers.add(null);
+            keyUpHandlers.add(null);
+        }
+        mouseButtonDownHandlers = new ArrayList<Handler>();
+        mouseButtonUpHandlers   = new ArrayList<Handler>();
+    }
+
     /**
      * Initialize object and activate event listeners.
      * @param listeningScene the window Scene that has focus during the game
      */
     Input(Scene listeningScene)
     {
-        keyDownQueue   = new ArrayList<String>();
-        keyUpQueue     = new ArrayList<String>();
-        keyDownList    = new ArrayList<String>();
-        keyPressedList = new ArrayList<String>();
-        keyUpList      = new ArrayList<String>();
+        this();
 
-        // Example Strings: UP, LEFT, Q, DIGIT1, SPACE, SHIFT
         listeningScene.setOnKeyPressed( 
-            (KeyEvent event) -> this.keyDownQueue.add(event.getCode().toString()) 
+            (KeyEvent event) -> this.pressKey(event.getCode()) 
         );
         
         listeningScene.setOnKeyReleased( 
-            (KeyEvent event) -> this.keyUpQueue.add(event.getCode().toString()) 
+            (KeyEvent event) -> this.releaseKey(event.getCode()) 
         );
         
         listeningScene.setOnMousePressed(
-            (MouseEvent event) -> this.mouseButtonDownQueue = true
+            (MouseEvent event) -> this.pressMouseButton()
         );
         
         listeningScene.setOnMouseReleased(
-            (MouseEvent event) -> this.mouseButtonUpQueue = true
+            (MouseEvent event) -> this.releaseMouseButton()
         );
         
         // this works because the canvas and window are the same size?
         listeningScene.setOnMouseMoved(
-            (MouseEvent event) -> 
-            {
-                this.mouseX = event.getX();
-                this.mouseY = event.getY();
-            }
+            (MouseEvent event) -> this.setMousePosition( event.getX(), event.getY() )
         );
     }
 
+    /**
+     * Get the key code with a given name.
+     * @param keyName name of key code (examples: "LEFT", "A", "DIGIT1", "SPACE", "SHIFT")
+     * @return the corresponding key code, or null if there is no key with this name
+     */
+    static KeyCode getKeyCode(String keyName)
+    {  return KEY_CODE_MAP.get(keyName);  }
+
+    /**
+     * Simulate a key being pressed; takes effect at the next {@link #update(double)}.
+     * Called automatically by event listeners; may also be used to supply input
+     * when running without a window (see {@link HeadlessRunner}).
+     * @param key code of corresponding key
+     */
+    public void pressKey(KeyCode key)
+    {  this.keyDownQueue.set( key.ordinal() );  }
+
+    /**
+     * Simulate a key being pressed; takes effect at the next {@link #update(double)}.
+     * @param keyName name of corresponding key (examples: "LEFT", "A", "DIGIT1", "SPACE", "SHIFT")
+     */
+    public void pressKey(String keyName)
+    {
+        KeyCode key = getKeyCode(keyName);
+        if (key != null)
+            this.pressKey(key);
+    }
+
+    /**
+     * Simulate a key being released; takes effect at the next {@link #update(double)}.
+     * @param key code of corresponding key
+     */
+    public void releaseKey(KeyCode key)
+    {  this.keyUpQueue.set( key.ordinal() );  }
+
+    /**
+     * Simulate a key being released; takes effect at the next {@link #update(double)}.
+     * @param keyName name of corresponding key (examples: "LEFT", "A", "DIGIT1", "SPACE", "SHIFT")
+     */
+    public void releaseKey(String keyName)
+    {
+        KeyCode key = getKeyCode(keyName);
+        if (key != null)
+            this.releaseKey(key);
+    }
+
+    /**
+     * Simulate a mouse button being pressed; takes effect at the next {@link #update(double)}.
+     */
+    public void pressMouseButton()
+    {  this.mouseButtonDownQueue = true;  }
+
+    /**
+     * Simulate a mouse button being released; takes effect at the next {@link #update(double)}.
+     */
+    public void releaseMouseButton()
+    {  this.mouseButtonUpQueue = true;  }
+
+    /**
+     * Simulate the mouse moving to a position on the game canvas.
+     * @param x x-coordinate of mouse position
+     * @param y y-coordinate of mouse position
+     */
+    public void setMousePosition(double x, double y)
+    {
+        this.mouseX = x;
+        this.mouseY = y;
+    }
+
+    /**
+     * Determine if key has been pressed / moved to down position (a discrete action).
+     * @param key code of corresponding key
+     * @return true if key was just pressed
+     */
+    public boolean isKeyDown(KeyCode key)
+    {  return this.keyDownSet.get( key.ordinal() );  }
+
     /**
      * Determine if key has been pressed / moved to down position (a discrete action).
      * @param keyName name of corresponding key (examples: "LEFT", "A", "DIGIT1", "SPACE", "SHIFT")
      * @return true if key was just pressed
      */
     public boolean isKeyDown(String keyName)
-    {  return this.keyDownList.contains(keyName);  }
+    {
+        KeyCode key = getKeyCode(keyName);
+        return (key != null) && this.isKeyDown(key);
+    }
+
+    /**
+     * Determine if key is currently being pressed / held down (a continuous action).
+     * @param key code of corresponding key
+     * @return true if key is currently pressed
+     */
+    public boolean isKeyPressed(KeyCode key)
+    {  return this.keyPressedSet.get( key.ordinal() );  }
 
     /**
      * Determine if key is currently being pressed / held down (a continuous action).
@@ -80,7 +244,18 @@ public class Input
      * @return true if key is currently pressed
      */
     public boolean isKeyPressed(String keyName)
-    {  return this.keyPressedList.contains(keyName);  }
+    {
+        KeyCode key = getKeyCode(keyName);
+        return (key != null) && this.isKeyPressed(key);
+    }
+
+    /**
+     * Determine if key has been released / returned to up position (a discrete action).
+     * @param key code of corresponding key
+     * @return true if key was just released
+     */
+    public boolean isKeyUp(KeyCode key)
+    {  return this.keyUpSet.get( key.ordinal() );  }
 
     /**
      * Determine if key has been released / returned to up position (a discrete action).
@@ -88,14 +263,31 @@ public class Input
      * @return true if key was just released
      */
     public boolean isKeyUp(String keyName)
-    {  return this.keyUpList.contains(keyName);  }
+    {
+        KeyCode key = getKeyCode(keyName);
+        return (key != null) && this.isKeyUp(key);
+    }
 
     /**
-     * Return current position of mouse on game canvas.
-     * @return current position of mouse
+     * Return current position of mouse on game canvas, in screen coordinates;
+     * the same as game world coordinates unless the camera has been moved, zoomed or rotated
+     * (see {@link #getMouseWorldPosition()}).
+     * @return current position of mouse on screen
      */
     public Vector2 getMousePosition()
     {  return new Vector2(this.mouseX, this.mouseY);  }
+
+    /**
+     * Return the position in the game world displayed at the current position of the mouse
+     * (see {@link Camera#screenToWorld(double, double)}).
+     * @return current position of mouse in the game world
+     */
+    public Vector2 getMouseWorldPosition()
+    {
+        if (this.camera == null)
+            return this.getMousePosition();
+        return this.camera.screenToWorld(this.mouseX, this.mouseY);
+    }
     
     /**
      * Determine if (any) mouse button has been pressed / moved to down position.
@@ -113,42 +305,220 @@ public class Input
     
     /**
      * Determine if (any) mouse button has recently been pressed
-     *   while mouse cursor position is contained with bounding area of a sprite.
+     *   while mouse cursor position is contained with bounding area of a sprite;
+     *   the mouse position is converted to game world coordinates (see {@link #getMouseWorldPosition()}).
      * @param sprite Sprite to check if clicked by mouse
      * @return true if the mouse has clicked on the sprite
      */
     public boolean isClicked(Sprite sprite)
-    {  return this.mouseButtonDown && sprite.getBoundary().contains( this.mouseX, this.mouseY );  }
+    {
+        if (!this.mouseButtonDown)
+            return false;
+        Vector2 position = this.getMouseWorldPosition();
+        return sprite.getBoundary().contains( position.x, position.y );
+    }
     
     /**
-     *  Update state information for keyboard and mouse.
+     * Create a copy of a list of handlers with a handler added.
+     * @param list list of handlers; may be null
+     * @param handler handler to add
+     * @return a new list containing the handlers
+     */
+    static ArrayList<Handler> addHandler(ArrayList<Handler> list, Handler handler)
+    {
+        ArrayList<Handler> newList = (list == null) ? new ArrayList<Handler>() : new ArrayList<Handler>(list);
+        newList.add(handler);
+        return newList;
+    }
+
+    /**
+     * Create a copy of a list of handlers with a handler removed.
+     * @param list list of handlers; may be null
+     * @param handler handler to remove
+     * @return a new list containing the remaining handlers, or null if none remain
+     */
+    static ArrayList<Handler> removeHandler(ArrayList<Handler> list, Handler handler)
+    {
+        if (list == null || !list.contains(handler))
+            return list;
+        ArrayList<Handler> newList = new ArrayList<Handler>(list);
+        newList.removeIf( (h) -> (h == handler) );
+        return newList.isEmpty() ? null : newList;
+    }
+
+    /**
+     * Run a handler once each time a key is pressed / moved to down position (a discrete action).
+     * @param key code of corresponding key
+     * @param handler method to run
+     */
+    public void onKeyDown(KeyCode key, Handler handler)
+    {
+        int i = key.ordinal();
+        this.keyDownHandlers.set( i, addHandler(this.keyDownHandlers.get(i), handler) );
+    }
+
+    /**
+     * Run a handler once each time a key is pressed / moved to down position (a discrete action).
+     * @param keyName name of corresponding key (examples: "LEFT", "A", "DIGIT1", "SPACE", "SHIFT")
+     * @param handler method to run (not added if there is no key with this name)
+     */
+    public void onKeyDown(String keyName, Handler handler)
+    {
+        KeyCode key = getKeyCode(keyName);
+        if (key != null)
+            this.onKeyDown(key, handler);
+    }
+
+    /**
+     * Run a handler during each update while a key is being pressed / held down (a continuous action),
+     * including the update when the key is first pressed.
+     * @param key code of corresponding key
+     * @param handler method to run
+     */
+    public void whileKeyPressed(KeyCode key, Handler handler)
+    {
+        int i = key.ordinal();
+        this.keyPressedHandlers.set( i, addHandler(this.keyPressedHandlers.get(i), handler) );
+    }
+
+    /**
+     * Run a handler during each update while a key is being pressed / held down (a continuous action),
+     * including the update when the key is first pressed.
+     * @param keyName name of corresponding key (examples: "LEFT", "A", "DIGIT1", "SPACE", "SHIFT")
+     * @param handler method to run (not added if there is no key with this name)
+     */
+    public void whileKeyPressed(String keyName, Handler handler)
+    {
+        KeyCode key = getKeyCode(keyName);
+        if (key != null)
+            this.whileKeyPressed(key, handler);
+    }
+
+    /**
+     * Apply an {@link Action} to a sprite during each update while a key is being pressed / held down.
+     * The action continues to be applied after it has completed; 
+     * its total time includes all of the time the key has been held down.
+     * @param key code of corresponding key
+     * @param target Sprite to which the action is applied
+     * @param action Action to apply
+     * @return the handler that applies the action, which may be used with {@link #removeHandler(Handler)}
+     */
+    public Handler whileKeyPressed(KeyCode key, Sprite target, Action action)
+    {
+        Handler handler = (deltaTime) -> action.apply(target, deltaTime);
+        this.whileKeyPressed(key, handler);
+        return handler;
+    }
+
+    /**
+     * Run a handler once each time a key is released / returned to up position (a discrete action).
+     * @param key code of corresponding key
+     * @param handler method to run
+     */
+    public void onKeyUp(KeyCode key, Handler handler)
+    {
+        int i = key.ordinal();
+        this.keyUpHandlers.set( i, addHandler(this.keyUpHandlers.get(i), handler) );
+    }
+
+    /**
+     * Run a handler once each time a key is released / returned to up position (a discrete action).
+     * @param keyName name of corresponding key (examples: "LEFT", "A", "DIGIT1", "SPACE", "SHIFT")
+     * @param handler method to run (not added if there is no key with this name)
+     */
+    public void onKeyUp(String keyName, Handler handler)
+    {
+        KeyCode key = getKeyCode(keyName);
+        if (key != null)
+            this.onKeyUp(key, handler);
+    }
+
+    /**
+     * Run a handler once each time (any) mouse button is pressed / moved to down position.
+     * @param handler method to run
+     */
+    public void onMouseButtonDown(Handler handler)
+    {  this.mouseButtonDownHandlers = addHandler(this.mouseButtonDownHandlers, handler);  }
+
+    /**
+     * Run a handler once each time (any) mouse button is released / returned to up position.
+     * @param handler method to run
+     */
+    public void onMouseButtonUp(Handler handler)
+    {  this.mouseButtonUpHandlers = addHandler(this.mouseButtonUpHandlers, handler);  }
+
+    /**
+     * Stop running a handler for all keys and mouse events it was bound to.
+     * Handlers that control a sprite should be removed when the sprite is removed from the game.
+     * @param handler the handler to remove
+     */
+    public void removeHandler(Handler handler)
+    {
+        for (int i = 0; i < KEY_CODES.length; i++)
+        {
+            this.keyDownHandlers.set( i, removeHandler(this.keyDownHandlers.get(i), handler) );
+            this.keyPressedHandlers.set( i, removeHandler(this.keyPressedHandlers.get(i), handler) );
+            this.keyUpHandlers.set( i, removeHandler(this.keyUpHandlers.get(i), handler) );
+        }
+
+        this.mouseButtonDownHandlers = removeHandler(this.mouseButtonDownHandlers, handler);
+        if (this.mouseButtonDownHandlers == null)
+            this.mouseButtonDownHandlers = new ArrayList<Handler>();
+
+        this.mouseButtonUpHandlers = removeHandler(this.mouseButtonUpHandlers, handler);
+        if (this.mouseButtonUpHandlers == null)
+            this.mouseButtonUpHandlers = new ArrayList<Handler>();
+    }
+
+    /**
+     * Run the handlers bound to each key in a set.
+     * @param keySet set of key codes, indexed by ordinal
+     * @param handlerTable handlers bound to each key, indexed by ordinal
+     * @param deltaTime elapsed time (seconds) simulated by the current update
+     */
+    static void dispatch(BitSet keySet, ArrayList<ArrayList<Handler>> handlerTable, double deltaTime)
+    {
+        for (int i = keySet.nextSetBit(0); i >= 0; i = keySet.nextSetBit(i + 1))
+        {
+            ArrayList<Handler> handlerList = handlerTable.get(i);
+            if (handlerList != null)
+                dispatch(handlerList, deltaTime);
+        }
+    }
+
+    /**
+     * Run each handler in a list.
+     * @param handlerList the handlers to run
+     * @param deltaTime elapsed time (seconds) simulated by the current update
+     */
+    static void dispatch(ArrayList<Handler> handlerList, double deltaTime)
+    {
+        for (int n = 0; n < handlerList.size(); n++)
+            handlerList.get(n).handle(deltaTime);
+    }
+
+    /**
+     *  Update state information for keyboard and mouse,
+     *  and then run the handlers bound to keys and mouse events that occurred.
      *  Automatically called by {@link Game} class during the game loop.
+     *  @param deltaTime elapsed time (seconds) simulated by the current update
      */
-    void update()
+    void update(double deltaTime)
     {
         // clear previous discrete event status
-        this.keyDownList.clear();
-        this.keyUpList.clear();
+        this.keyDownSet.clear();
+        this.keyUpSet.clear();
         this.mouseButtonDown = false;
         this.mouseButtonUp = false;
         
-        // update current event status
-        for (String k : this.keyDownQueue)
-        {
-            // avoid multiple keydown events while holding key
-            // avoid duplicate entries in key pressed list
-            if ( !this.keyPressedList.contains(k) )
-            {
-                this.keyDownList.add(k);
-                this.keyPressedList.add(k);
-            }
-        }
+        // update current event status;
+        // avoid multiple keydown events while holding key
+        this.keyDownSet.or(this.keyDownQueue);
+        this.keyDownSet.andNot(this.keyPressedSet);
+        this.keyPressedSet.or(this.keyDownSet);
         
-        for (String k : this.keyUpQueue)
-        {
-            this.keyPressedList.remove(k);
-            this.keyUpList.add(k);
-        }
+        this.keyPressedSet.andNot(this.keyUpQueue);
+        this.keyUpSet.or(this.keyUpQueue);
         
         if (this.mouseButtonDownQueue)
             this.mouseButtonDown = true;
@@ -161,6 +531,17 @@ public class Input
         this.keyUpQueue.clear();
         this.mouseButtonDownQueue = false;
         this.mouseButtonUpQueue = false;
+
+        // run handlers; only keys that changed or are held down are checked
+        dispatch(this.keyDownSet, this.keyDownHandlers, deltaTime);
+        dispatch(this.keyPressedSet, this.keyPressedHandlers, deltaTime);
+        dispatch(this.keyUpSet, this.keyUpHandlers, deltaTime);
+
+        if (this.mouseButtonDown)
+            dispatch(this.mouseButtonDownHandlers, deltaTime);
+
+        if (this.mouseButtonUp)
+            dispatch(this.mouseButtonUpHandlers, deltaTime);
     }
 }
 
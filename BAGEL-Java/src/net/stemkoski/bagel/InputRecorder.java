@@ -0,0 +1,173 @@
+package net.stemkoski.bagel;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.BitSet;
+
+/**
+ *  Records the keyboard and mouse events received by a {@link Game} during each frame,
+ *  together with the amount of time that passed during each frame,
+ *  so that the frames can be run again in exactly the same way (see {@link InputReplay}).
+ *  For example, to record a session:
+ *  <pre>{@code
+ *  // in create()
+ *  this.setInputRecorder( new InputRecorder("session.rec") );
+ *  }</pre>
+ *  and to run it again later without a window:
+ *  <pre>{@code
+ *  HeadlessRunner runner = new HeadlessRunner( new SpaceRocks() );
+ *  runner.runReplay( new InputReplay("session.rec") );
+ *  }</pre>
+ *  Each frame is stored as: the frame time (8 bytes); a byte of mouse flags;
+ *  the mouse position (16 bytes) if it has changed since the previous frame;
+ *  and the number and codes of keys pressed and released (1 byte each).
+ *  A typical frame with no events takes 11 bytes.
+ *  <br><br>
+ *  Games that use random numbers should use a fixed seed, or frames will not be repeated exactly.
+ */
+public class InputRecorder
+{
+	/**
+	 * value at the start of every recording, used to identify the file format
+	 */
+	static final int FILE_ID = 0x4241474C;
+
+	/**
+	 * version of the file format
+	 */
+	static final int VERSION = 1;
+
+	/**
+	 * mouse flags stored for each frame
+	 */
+	static final int MOUSE_BUTTON_DOWN = 1;
+	static final int MOUSE_BUTTON_UP   = 2;
+	static final int MOUSE_MOVED       = 4;
+
+	/**
+	 * stream that frames are written to
+	 */
+	DataOutputStream output;
+
+	/**
+	 * most recently recorded mouse position
+	 */
+	double mouseX;
+	double mouseY;
+
+	/**
+	 * number of frames recorded so far
+	 */
+	long frameCount;
+
+	/**
+	 * Create a recorder that writes to a file.
+	 * @param fileName name of file to create (or replace)
+	 * @throws IOException if the file cannot be created
+	 */
+	public InputRecorder(String fileName) throws IOException
+	{
+		this( new FileOutputStream(fileName) );
+	}
+
+	/**
+	 * Create a recorder that writes to a stream.
+	 * @param stream stream that frames are written to; closed by {@link #close()}
+	 * @throws IOException if the stream cannot be written to
+	 */
+	public InputRecorder(OutputStream stream) throws IOException
+	{
+		this.output = new DataOutputStream( new BufferedOutputStream(stream) );
+		this.output.writeInt(FILE_ID);
+		this.output.writeByte(VERSION);
+
+		// key codes are stored by ordinal; replay requires the same set of key codes
+		this.output.writeShort(Input.KEY_CODES.length);
+
+		this.mouseX = Double.NaN;
+		this.mouseY = Double.NaN;
+		this.frameCount = 0;
+	}
+
+	/**
+	 * Write the events received by an Input object since the previous frame
+	 * (events that will be processed by the next {@link Input#update(double)}).
+	 * Automatically called by {@link Game} at the start of each frame.
+	 * @param input the Input object used by the game
+	 * @param frameTime amount of time that has passed since the previous frame
+	 */
+	void recordFrame(Input input, double frameTime)
+	{
+		try
+		{
+			this.output.writeDouble(frameTime);
+
+			boolean mouseMoved = (input.mouseX != this.mouseX || input.mouseY != this.mouseY);
+			int flags = 0;
+			if (input.mouseButtonDownQueue)
+				flags |= MOUSE_BUTTON_DOWN;
+			if (input.mouseButtonUpQueue)
+				flags |= MOUSE_BUTTON_UP;
+			if (mouseMoved)
+				flags |= MOUSE_MOVED;
+			this.output.writeByte(flags);
+
+			if (mouseMoved)
+			{
+				this.output.writeDouble(input.mouseX);
+				this.output.writeDouble(input.mouseY);
+				this.mouseX = input.mouseX;
+				this.mouseY = input.mouseY;
+			}
+
+			this.writeKeys(input.keyDownQueue);
+			this.writeKeys(input.keyUpQueue);
+			this.frameCount++;
+		}
+		catch (IOException error)
+		{
+			throw new UncheckedIOException(error);
+		}
+	}
+
+	/**
+	 * Write the number of keys in a set, followed by the ordinal of each key.
+	 * @param keySet set of key codes, indexed by ordinal
+	 * @throws IOException if the stream cannot be written to
+	 */
+	void writeKeys(BitSet keySet) throws IOException
+	{
+		this.output.writeByte( keySet.cardinality() );
+		for (int i = keySet.nextSetBit(0); i >= 0; i = keySet.nextSetBit(i + 1))
+			this.output.writeByte(i);
+	}
+
+	/**
+	 * Get the number of frames recorded so far.
+	 * @return the number of frames recorded so far
+	 */
+	public long getFrameCount()
+	{
+		return this.frameCount;
+	}
+
+	/**
+	 * Write any buffered frames and close the stream.
+	 * The recorder should be removed from the game (see {@link Game#setInputRecorder(InputRecorder)}) first.
+	 */
+	public void close()
+	{
+		try
+		{
+			this.output.close();
+		}
+		catch (IOException error)
+		{
+			throw new UncheckedIOException(error);
+		}
+	}
+}
@@ -0,0 +1,172 @@
+package net.stemkoski.bagel;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.BitSet;
+
+/**
+ *  Supplies a {@link Game} with the keyboard and mouse events and frame times
+ *  stored by an {@link InputRecorder}, so that a recorded session is run again
+ *  with exactly the same sequence of frames.
+ *  While a replay is in progress, events from the keyboard and mouse are ignored,
+ *  and the recorded frame times are used instead of the actual frame times.
+ *  May be used with or without a window:
+ *  <pre>{@code
+ *  // in create()
+ *  this.setInputReplay( new InputReplay("session.rec") );
+ *
+ *  // or, without a window
+ *  HeadlessRunner runner = new HeadlessRunner( new SpaceRocks() );
+ *  runner.runReplay( new InputReplay("session.rec") );
+ *  }</pre>
+ */
+public class InputReplay
+{
+	/**
+	 * stream that frames are read from
+	 */
+	DataInputStream input;
+
+	/**
+	 * frame time of the next frame, read in advance to detect the end of the recording
+	 */
+	double nextFrameTime;
+
+	/**
+	 * determines if all frames have been replayed
+	 */
+	boolean finished;
+
+	/**
+	 * most recently replayed mouse position;
+	 * applied every frame, so that mouse movement is ignored while replaying
+	 */
+	double mouseX;
+	double mouseY;
+
+	/**
+	 * number of frames replayed so far
+	 */
+	long frameCount;
+
+	/**
+	 * Create a replay that reads from a file created by an {@link InputRecorder}.
+	 * @param fileName name of file to read
+	 * @throws IOException if the file cannot be read or is not a recording
+	 */
+	public InputReplay(String fileName) throws IOException
+	{
+		this( new FileInputStream(fileName) );
+	}
+
+	/**
+	 * Create a replay that reads from a stream written by an {@link InputRecorder}.
+	 * @param stream stream that frames are read from; closed when all frames have been replayed
+	 * @throws IOException if the stream cannot be read or is not a recording
+	 */
+	public InputReplay(InputStream stream) throws IOException
+	{
+		this.input = new DataInputStream( new BufferedInputStream(stream) );
+
+		if (this.input.readInt() != InputRecorder.FILE_ID || this.input.readByte() != InputRecorder.VERSION)
+			throw new IOException("Stream is not an input recording.");
+		if (this.input.readShort() != Input.KEY_CODES.length)
+			throw new IOException("Input recording was created with a different version of JavaFX.");
+
+		this.mouseX = 0;
+		this.mouseY = 0;
+		this.frameCount = 0;
+		this.finished = false;
+		this.readFrameTime();
+	}
+
+	/**
+	 * Read the frame time of the next frame; if there are no more frames,
+	 * the replay is finished and the stream is closed.
+	 * @throws IOException if the stream cannot be read
+	 */
+	void readFrameTime() throws IOException
+	{
+		try
+		{
+			this.nextFrameTime = this.input.readDouble();
+		}
+		catch (EOFException error)
+		{
+			this.finished = true;
+			this.input.close();
+		}
+	}
+
+	/**
+	 * Replace the events received by an Input object since the previous frame
+	 * with the events of the next recorded frame.
+	 * Automatically called by {@link Game} at the start of each frame.
+	 * @param input the Input object used by the game
+	 * @return the recorded frame time
+	 */
+	double replayFrame(Input input)
+	{
+		try
+		{
+			double frameTime = this.nextFrameTime;
+
+			int flags = this.input.readUnsignedByte();
+			input.mouseButtonDownQueue = (flags & InputRecorder.MOUSE_BUTTON_DOWN) != 0;
+			input.mouseButtonUpQueue   = (flags & InputRecorder.MOUSE_BUTTON_UP) != 0;
+			if ( (flags & InputRecorder.MOUSE_MOVED) != 0 )
+			{
+				this.mouseX = this.input.readDouble();
+				this.mouseY = this.input.readDouble();
+			}
+			input.setMousePosition(this.mouseX, this.mouseY);
+
+			this.readKeys(input.keyDownQueue);
+			this.readKeys(input.keyUpQueue);
+
+			this.frameCount++;
+			this.readFrameTime();
+			return frameTime;
+		}
+		catch (IOException error)
+		{
+			throw new UncheckedIOException(error);
+		}
+	}
+
+	/**
+	 * Replace the contents of a set of keys with keys read from the stream.
+	 * @param keySet set of key codes, indexed by ordinal
+	 * @throws IOException if the stream cannot be read
+	 */
+	void readKeys(BitSet keySet) throws IOException
+	{
+		keySet.clear();
+		int count = this.input.readUnsignedByte();
+		for (int n = 0; n < count; n++)
+			keySet.set( this.input.readUnsignedByte() );
+	}
+
+	/**
+	 * Determine if all recorded frames have been replayed.
+	 * @return true if all recorded frames have been replayed
+	 */
+	public boolean isFinished()
+	{
+		return this.finished;
+	}
+
+	/**
+	 * Get the number of frames replayed so far.
+	 * @return the number of frames replayed so far
+	 */
+	public long getFrameCount()
+	{
+		return this.frameCount;
+	}
+}
@@ -1,13 +1,22 @@
 package net.stemkoski.bagel;
 
+import javafx.geometry.Bounds;
+import javafx.scene.SnapshotParameters;
 import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.image.Image;
 import javafx.scene.text.Font;
+import javafx.scene.text.Text;
 import javafx.scene.paint.Color;
 import javafx.scene.text.TextAlignment;
+import javafx.scene.transform.Scale;
 
 /**
  * A structure to store and display text.
  * Most properties are public and should be set directly.
+ * <br><br>
+ * Text that does not change is drawn into an image once, and the image is drawn each frame
+ * (see {@link #textCached}); text that changes often, such as a score, may instead be drawn
+ * one character at a time from a set of previously drawn characters (see {@link GlyphAtlas}).
  */
 public class Label extends Entity
 {
@@ -25,6 +34,7 @@ public class Label extends Entity
 	
 	/**
 	 * Automatically set by load methods.
+	 * Fonts are not loaded (remains null) when running without a window (see {@link HeadlessRunner}).
 	 */
 	Font font;
 	
@@ -49,9 +59,21 @@ public class Label extends Entity
 	public double y;
 	
 	/**
-	 * text alignment ("LEFT", "CENTER", "RIGHT") with respect to anchor point (x,y)
+	 * text alignment ("LEFT", "CENTER", "RIGHT") with respect to anchor point (x,y);
+	 * may also be set with {@link #setAlignment(TextAlignment)}
 	 */
 	public String alignment;
+
+	/**
+	 * text alignment corresponding to {@link #alignmentName}
+	 */
+	TextAlignment textAlignment;
+
+	/**
+	 * value of {@link #alignment} when {@link #textAlignment} was set;
+	 * the alignment name is only compared with "LEFT", "CENTER" and "RIGHT" when it changes
+	 */
+	String alignmentName;
 	
 	/**
 	 * determines if font border will be drawn
@@ -72,6 +94,47 @@ public class Label extends Entity
 	 * determines if label will be visible
 	 */
 	public boolean visible;
+
+	/**
+	 * determines if the text is drawn into an image, which is then drawn each frame
+	 * while the text and its appearance remain the same (enabled by default).
+	 * When the text changes, it is drawn directly until it remains the same for a frame,
+	 * so text that changes every frame is never drawn into an image.
+	 */
+	public boolean textCached;
+
+	/**
+	 * if not null, used to draw text that only contains characters in the atlas
+	 * (see {@link #setGlyphAtlas(GlyphAtlas)})
+	 */
+	GlyphAtlas glyphAtlas;
+
+	// text and appearance drawn in the previous frame; the cached image is valid while these are unchanged
+
+	String drawnText;
+	Font drawnFont;
+	Color drawnFontColor;
+	boolean drawnBorderDraw;
+	int drawnBorderSize;
+	Color drawnBorderColor;
+	double drawnScale;
+	TextAlignment drawnAlignment;
+
+	/**
+	 * image of the text (and border), drawn by {@link #createTextImage()}; null if not yet drawn
+	 */
+	Image textImage;
+
+	/**
+	 * position of the top-left corner of {@link #textImage}, relative to the left end of the text baseline
+	 */
+	double textImageLeft;
+	double textImageTop;
+
+	/**
+	 * width of the text (not including the border), used for alignment
+	 */
+	double textImageAdvance;
     
 	/**
 	 * Initialize label to default settings.
@@ -80,41 +143,49 @@ public class Label extends Entity
     {
         this.fontName = "Arial";
         this.fontSize = 16;
-        this.font = new Font( this.fontName, this.fontSize );
+        if (!Game.headless)
+            this.font = AssetCache.getFont( this.fontName, this.fontSize );
         this.fontColor = Color.BLACK;
         this.text = " ";
         this.x = 0;
         this.y = 0;
-        this.alignment = "LEFT";
+        this.setAlignment(TextAlignment.LEFT);
         this.borderDraw = false;
         this.borderSize = 1;
         this.borderColor = Color.BLACK;
         this.visible = true;
+        this.textCached = true;
+        this.glyphAtlas = null;
     }
 
     /**
      * Configure this label to use a font already installed on this system.
+     * Fonts are stored and reused, so this method may be called repeatedly (for example, to animate text size).
      * @param fontName name of font (e.g. "Arial", "Times New Roman", "Courier New"); must be installed on system
      * @param fontSize size of font
      */
     public void loadFontFromSystem(String fontName, int fontSize)
     {
-        this.font = new Font( fontName, fontSize );
+        if (!Game.headless)
+            this.font = AssetCache.getFont( fontName, fontSize );
         this.fontName = fontName;
         this.fontSize = fontSize;
     }
 
     /**
      * Configure this label to use a font from a specified file.
+     * Fonts are stored and reused, so the file is only loaded once for each size.
      * @param fontFileName name of font file
      * @param fontSize size of font
      */
     public void loadFontFromFile(String fontFileName, int fontSize)
     {
     	// String fileName = new File(fontFileName).toURI().toURL().toString();
-        this.font = Font.loadFont( "file:" + fontFileName, fontSize );    
-        this.fontName = this.font.getName();
         this.fontSize = fontSize;
+        if (Game.headless)
+            return;
+        this.font = AssetCache.getFontFromFile( fontFileName, fontSize );
+        this.fontName = this.font.getName();
     }
     
     /**
@@ -130,6 +201,133 @@ public class Label extends Entity
         this.y = y;
     }
     
+    /**
+     * Use a set of previously drawn characters to draw this label, 
+     * whenever the text only contains characters in the set.
+     * @param glyphAtlas the set of characters, or null to stop using a set of characters
+     */
+    public void setGlyphAtlas(GlyphAtlas glyphAtlas)
+    {
+        this.glyphAtlas = glyphAtlas;
+    }
+
+    /**
+     * Set the alignment of the text with respect to the anchor point (x,y).
+     * @param alignment LEFT, CENTER, or RIGHT (JUSTIFY is the same as LEFT)
+     */
+    public void setAlignment(TextAlignment alignment)
+    {
+        if (alignment == TextAlignment.JUSTIFY)
+            alignment = TextAlignment.LEFT;
+        this.textAlignment = alignment;
+        this.alignment = alignment.name();
+        this.alignmentName = this.alignment;
+    }
+
+    /**
+     * Get the alignment of the text, with respect to the anchor point.
+     * @return the alignment of the text
+     */
+    public TextAlignment getTextAlignment()
+    {
+        // alignment has been set directly
+        if (this.alignment != this.alignmentName)
+        {
+            if (this.alignment.equals("CENTER"))
+                this.textAlignment = TextAlignment.CENTER;
+            else if (this.alignment.equals("RIGHT"))
+                this.textAlignment = TextAlignment.RIGHT;
+            else
+                this.textAlignment = TextAlignment.LEFT;
+            this.alignmentName = this.alignment;
+        }
+        return this.textAlignment;
+    }
+
+    /**
+     * Determine if the text and its appearance are the same as in the previous frame;
+     * if not, store the current values, and discard the cached image.
+     * @return true if the text and its appearance have not changed
+     */
+    boolean isUnchanged()
+    {
+        // most frames, the text is the same object as in the previous frame
+        if ( (this.text == this.drawnText || this.text.equals(this.drawnText)) && this.font == this.drawnFont 
+                && this.fontColor.equals(this.drawnFontColor)
+                && this.borderDraw == this.drawnBorderDraw && this.borderSize == this.drawnBorderSize 
+                && this.borderColor.equals(this.drawnBorderColor) && RenderState.screenScale == this.drawnScale
+                && this.getTextAlignment() == this.drawnAlignment )
+            return true;
+
+        this.drawnText = this.text;
+        this.drawnFont = this.font;
+        this.drawnFontColor = this.fontColor;
+        this.drawnBorderDraw = this.borderDraw;
+        this.drawnBorderSize = this.borderSize;
+        this.drawnBorderColor = this.borderColor;
+        this.drawnScale = RenderState.screenScale;
+        this.drawnAlignment = this.getTextAlignment();
+        this.textImage = null;
+        return false;
+    }
+
+    /**
+     * Create a Text object with the same text and appearance as this label;
+     * the left end of the text baseline is at (0,0).
+     * @param text the text to display
+     * @return a Text object that may be drawn into an image
+     */
+    Text createTextNode(String text)
+    {
+        return createTextNode( text, this.font, this.fontColor, this.getTextAlignment(),
+            this.borderDraw ? this.borderColor : null, this.borderSize );
+    }
+
+    /**
+     * Create a Text object with a given appearance;
+     * the left end of the text baseline is at (0,0).
+     * @param text the text to display
+     * @param font font of the text
+     * @param fontColor color of the text
+     * @param alignment alignment of the text
+     * @param borderColor color of the border, or null if no border is drawn
+     * @param borderSize width of the border
+     * @return a Text object that may be drawn into an image
+     */
+    static Text createTextNode(String text, Font font, Color fontColor, TextAlignment alignment,
+        Color borderColor, int borderSize)
+    {
+        Text textNode = new Text(text);
+        textNode.setFont(font);
+        textNode.setFill(fontColor);
+        textNode.setTextAlignment(alignment);
+        if (borderColor != null)
+        {
+            textNode.setStroke(borderColor);
+            textNode.setStrokeWidth(borderSize);
+        }
+        return textNode;
+    }
+
+    /**
+     * Draw the text (and border) into {@link #textImage}, at the resolution of the canvas
+     * (see {@link Game#renderScale}).
+     */
+    void createTextImage()
+    {
+        Text textNode = this.createTextNode(this.text);
+        Bounds bounds = textNode.getBoundsInParent();
+
+        SnapshotParameters parameters = new SnapshotParameters();
+        parameters.setFill(Color.TRANSPARENT);
+        parameters.setTransform( new Scale(this.drawnScale, this.drawnScale) );
+
+        this.textImage = textNode.snapshot(parameters, null);
+        this.textImageLeft = bounds.getMinX();
+        this.textImageTop = bounds.getMinY();
+        this.textImageAdvance = textNode.getLayoutBounds().getWidth();
+    }
+
     /**
      * Render this text to a canvas used specified parameters. 
      */
@@ -138,25 +336,42 @@ public class Label extends Entity
     {
         if ( !this.visible )
             return;
-            
-        context.setFont( this.font );
-        context.setFill( this.fontColor );
-
-        if (this.alignment.equals("LEFT"))
-            context.setTextAlign(TextAlignment.LEFT);
-        else if (this.alignment.equals("CENTER"))
-            context.setTextAlign(TextAlignment.CENTER);
-        else if (this.alignment.equals("RIGHT"))
-            context.setTextAlign(TextAlignment.RIGHT);
-
-        context.setTransform(1,0, 0,1, 0,0);
-        context.setGlobalAlpha(1);
+
+        // labels are drawn at screen coordinates, and are not affected by the camera
+        RenderState.setScreenIdentityTransform(context);
+        RenderState.setGlobalAlpha(context, 1);
+
+        if (this.glyphAtlas != null && this.glyphAtlas.drawText(context, this.text, this.x, this.y, this.getTextAlignment()))
+            return;
+
+        // fonts are not loaded when running without a window
+        if (this.textCached && this.font != null && this.isUnchanged())
+        {
+            if (this.textImage == null)
+                this.createTextImage();
+
+            TextAlignment textAlignment = this.getTextAlignment();
+            double left = this.x;
+            if (textAlignment == TextAlignment.CENTER)
+                left -= this.textImageAdvance / 2;
+            else if (textAlignment == TextAlignment.RIGHT)
+                left -= this.textImageAdvance;
+
+            context.drawImage( this.textImage, left + this.textImageLeft, this.y + this.textImageTop,
+                    this.textImage.getWidth() / this.drawnScale, this.textImage.getHeight() / this.drawnScale );
+            return;
+        }
+
+        // only changes context values that differ from those of the previously drawn label
+        RenderState.setFont( context, this.font );
+        RenderState.setFill( context, this.fontColor );
+
+        RenderState.setTextAlign( context, this.getTextAlignment() );
         context.fillText( this.text, this.x, this.y );
         
         if (this.borderDraw)
         {
-            context.setStroke(this.borderColor);
-            context.setLineWidth(this.borderSize);
+            RenderState.setStroke( context, this.borderColor, this.borderSize );
             context.strokeText( this.text, this.x, this.y );
         }
     }
@@ -115,10 +115,55 @@ public class Physics
      */
     public void accelerateAtAngle(double angleDegrees)
     {
-        Vector2 v = new Vector2();
-        v.setLength(this.accelerationValue);
-        v.setAngle(angleDegrees);
-        this.accelerationVector.addVector( v );
+        double amount = Math.abs(this.accelerationValue);
+        this.accelerationVector.addValues( 
+            amount * Math.cos(angleDegrees * Math.PI/180), 
+            amount * Math.sin(angleDegrees * Math.PI/180) );
+    }
+
+    /**
+     * Calculate the amount to multiply a velocity by, after acceleration has been applied,
+     *  so that speed is reduced when not accelerating and does not exceed the maximum speed.
+     *  Used by {@link #update(double)}, and by {@link PhysicsBatch} and {@link SpriteBatch}
+     *  so that all of them produce the same results.
+     * @param velX x-component of velocity, after acceleration has been applied
+     * @param velY y-component of velocity, after acceleration has been applied
+     * @param accX x-component of acceleration
+     * @param accY y-component of acceleration
+     * @param maximumSpeed maximum speed
+     * @param decelerationValue rate of speed reduction when not accelerating
+     * @param dt elapsed time (seconds) since previous iteration of game loop
+     * @return amount to multiply velocity by (1 if speed is unchanged)
+     */
+    static double getSpeedScale(double velX, double velY, double accX, double accY,
+            double maximumSpeed, double decelerationValue, double dt)
+    {
+        boolean decelerating = (accX * accX + accY * accY < 0.001 * 0.001)
+                                && (decelerationValue * dt != 0);
+
+        double speedSquared = velX * velX + velY * velY;
+
+        // speed only needs to be changed when decelerating or above maximum speed
+        if ( !decelerating && speedSquared <= maximumSpeed * maximumSpeed )
+            return 1;
+
+        double speed = Math.sqrt(speedSquared);
+        if (speed == 0)
+            return 1;
+
+        double newSpeed = speed;
+
+        // decrease speed (decelerate) when not accelerating
+        if (decelerating)
+            newSpeed -= decelerationValue * dt;
+
+        // keep speed within set bounds
+        if (newSpeed < 0)
+            newSpeed = 0;
+        if (newSpeed > maximumSpeed)
+            newSpeed = maximumSpeed;
+
+        return newSpeed / speed;
     }
 
     /**
@@ -135,20 +180,12 @@ public class Physics
             this.accelerationVector.x * dt, 
             this.accelerationVector.y * dt );
 
-        double speed = this.getSpeed();
-
-        // decrease speed (decelerate) when not accelerating
-        if (this.accelerationVector.getLength() < 0.001)
-            speed -= this.decelerationValue * dt;
-
-        // keep speed within set bounds
-        if (speed < 0)
-            speed = 0;
-        if (speed > this.maximumSpeed)
-            speed = this.maximumSpeed;
-
-        // update velocity
-        this.setSpeed(speed);
+        // update velocity, preserving direction
+        double scale = getSpeedScale( this.velocityVector.x, this.velocityVector.y,
+            this.accelerationVector.x, this.accelerationVector.y,
+            this.maximumSpeed, this.decelerationValue, dt );
+        if (scale != 1)
+            this.velocityVector.multiply(scale);
 
         // update position according to value stored in velocity vector
         this.positionVector.addValues(
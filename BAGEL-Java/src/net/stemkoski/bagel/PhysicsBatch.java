@@ -0,0 +1,332 @@
+package net.stemkoski.bagel;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ *  Updates the position and velocity of many {@link Physics} (or {@link PlatformPhysics}) objects at once.
+ *  Values are copied into arrays (one array per value), updated with a single loop
+ *  that contains no trigonometry, and then copied back.
+ *  When the JDK Vector API is available (see {@link #isVectorApiAvailable()}), 
+ *  the loop updates several objects at the same time using vector (SIMD) instructions;
+ *  otherwise, or for the last few objects, each object is updated separately.
+ *  <br><br>
+ *  The results are the same as calling {@link Physics#update(double)} 
+ *  (or {@link PlatformPhysics#update(double)}) for each object, since the same calculations are used.
+ *  <br><br>
+ *  Batches are intended for Physics objects that are not attached to a {@link Sprite}:
+ *  a sprite's {@link Sprite#physics} is already updated by {@link Sprite#act(double)},
+ *  and {@link #store(ArrayList)} only changes the Physics objects, not the sprite positions.
+ *  For example, to move many particles and draw them with a {@link SpriteBatch}:
+ *  <pre>{@code
+ *  // in initialize()
+ *  for (int i = 0; i < 1000; i++)
+ *  {
+ *      Physics body = new Physics(0, 400, 100);
+ *      body.positionVector.setValues(400, 300);
+ *      body.setSpeed(200);
+ *      body.setMotionAngle( Math.random() * 360 );
+ *      sparkPhysicsList.add(body);
+ *      sparks.addSprite(400, 300);
+ *  }
+ *
+ *  // in update()
+ *  physicsBatch.load(sparkPhysicsList);
+ *  physicsBatch.update(deltaTime);
+ *  physicsBatch.store(sparkPhysicsList);
+ *  for (int i = 0; i < sparkPhysicsList.size(); i++)
+ *  {
+ *      Vector2 position = sparkPhysicsList.get(i).positionVector;
+ *      sparks.get(i).setPosition(position.x, position.y);
+ *  }
+ *  }</pre>
+ */
+public class PhysicsBatch
+{
+	/**
+	 * number of objects stored in this batch
+	 */
+	int size;
+
+	double[] positionX;
+	double[] positionY;
+	double[] velocityX;
+	double[] velocityY;
+	double[] accelerationX;
+	double[] accelerationY;
+	double[] maximumSpeed;
+	double[] decelerationValue;
+
+	/**
+	 * constant downwards acceleration; 0 for objects that are not PlatformPhysics
+	 */
+	double[] gravity;
+
+	/**
+	 * maximum vertical speed; infinite for objects that are not PlatformPhysics
+	 */
+	double[] terminalVelocity;
+
+	/**
+	 * determines if the module <code>jdk.incubator.vector</code> is available,
+	 * which requires the Java option <code>--add-modules jdk.incubator.vector</code>
+	 */
+	static final boolean VECTOR_API_AVAILABLE = 
+			ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent();
+
+	/**
+	 * determines if objects are updated using vector instructions (see {@link #setVectorized(boolean)})
+	 */
+	boolean vectorized;
+
+	/**
+	 * Initialize an empty batch.
+	 */
+	public PhysicsBatch()
+	{
+		this.size = 0;
+		this.allocate(64);
+		this.vectorized = VECTOR_API_AVAILABLE;
+	}
+
+	/**
+	 * Determine if the JDK Vector API can be used to update several objects at the same time.
+	 * The Vector API is an incubator module, and is only available if Java is started with the option
+	 * <code>--add-modules jdk.incubator.vector</code>; otherwise, objects are updated one at a time.
+	 * @return true if the Vector API is available
+	 */
+	public static boolean isVectorApiAvailable()
+	{
+		return VECTOR_API_AVAILABLE;
+	}
+
+	/**
+	 * Set whether this batch uses vector instructions when the Vector API is available 
+	 * (see {@link #isVectorApiAvailable()}); true by default. 
+	 * Mainly useful for comparing the speed of both methods.
+	 * @param vectorized whether to use vector instructions
+	 */
+	public void setVectorized(boolean vectorized)
+	{
+		this.vectorized = vectorized && VECTOR_API_AVAILABLE;
+	}
+
+	/**
+	 * Determine if this batch uses vector instructions (see {@link #setVectorized(boolean)}).
+	 * @return true if this batch uses vector instructions
+	 */
+	public boolean isVectorized()
+	{
+		return this.vectorized;
+	}
+
+	/**
+	 * Resize all arrays to the given capacity, preserving existing values.
+	 * @param capacity number of objects that can be stored without resizing
+	 */
+	void allocate(int capacity)
+	{
+		if (this.positionX == null)
+		{
+			this.positionX = new double[capacity];
+			this.positionY = new double[capacity];
+			this.velocityX = new double[capacity];
+			this.velocityY = new double[capacity];
+			this.accelerationX = new double[capacity];
+			this.accelerationY = new double[capacity];
+			this.maximumSpeed = new double[capacity];
+			this.decelerationValue = new double[capacity];
+			this.gravity = new double[capacity];
+			this.terminalVelocity = new double[capacity];
+			return;
+		}
+
+		this.positionX = Arrays.copyOf(this.positionX, capacity);
+		this.positionY = Arrays.copyOf(this.positionY, capacity);
+		this.velocityX = Arrays.copyOf(this.velocityX, capacity);
+		this.velocityY = Arrays.copyOf(this.velocityY, capacity);
+		this.accelerationX = Arrays.copyOf(this.accelerationX, capacity);
+		this.accelerationY = Arrays.copyOf(this.accelerationY, capacity);
+		this.maximumSpeed = Arrays.copyOf(this.maximumSpeed, capacity);
+		this.decelerationValue = Arrays.copyOf(this.decelerationValue, capacity);
+		this.gravity = Arrays.copyOf(this.gravity, capacity);
+		this.terminalVelocity = Arrays.copyOf(this.terminalVelocity, capacity);
+	}
+
+	/**
+	 * Remove all objects from this batch.
+	 */
+	public void clear()
+	{
+		this.size = 0;
+	}
+
+	/**
+	 * Get the number of objects stored in this batch.
+	 * @return the number of objects stored in this batch
+	 */
+	public int getSize()
+	{
+		return this.size;
+	}
+
+	/**
+	 * Copy the current values of an object into this batch.
+	 * @param body the object to copy values from
+	 * @return index of the object in this batch
+	 */
+	public int add(Physics body)
+	{
+		if (this.size == this.positionX.length)
+			this.allocate(this.size * 2);
+
+		int i = this.size;
+		this.positionX[i] = body.positionVector.x;
+		this.positionY[i] = body.positionVector.y;
+		this.velocityX[i] = body.velocityVector.x;
+		this.velocityY[i] = body.velocityVector.y;
+		this.accelerationX[i] = body.accelerationVector.x;
+		this.accelerationY[i] = body.accelerationVector.y;
+		this.maximumSpeed[i] = body.maximumSpeed;
+		this.decelerationValue[i] = body.decelerationValue;
+
+		if (body instanceof PlatformPhysics)
+		{
+			this.gravity[i] = ((PlatformPhysics)body).gravity;
+			this.terminalVelocity[i] = ((PlatformPhysics)body).terminalVelocity;
+		}
+		else
+		{
+			this.gravity[i] = 0;
+			this.terminalVelocity[i] = Double.POSITIVE_INFINITY;
+		}
+
+		this.size++;
+		return i;
+	}
+
+	/**
+	 * Copy the position, velocity and acceleration stored in this batch back into an object.
+	 * @param index index of the values in this batch (see {@link #add(Physics)})
+	 * @param body the object to copy values to
+	 */
+	public void copyTo(int index, Physics body)
+	{
+		body.positionVector.setValues( this.positionX[index], this.positionY[index] );
+		body.velocityVector.setValues( this.velocityX[index], this.velocityY[index] );
+		body.accelerationVector.setValues( this.accelerationX[index], this.accelerationY[index] );
+	}
+
+	/**
+	 * Replace the contents of this batch with the values of a list of objects.
+	 * @param bodyList the objects to copy values from
+	 */
+	public void load(ArrayList<? extends Physics> bodyList)
+	{
+		this.clear();
+		for (int i = 0; i < bodyList.size(); i++)
+			this.add( bodyList.get(i) );
+	}
+
+	/**
+	 * Copy the values stored in this batch back into a list of objects;
+	 * the list should be the same as the list used with {@link #load(ArrayList)}.
+	 * @param bodyList the objects to copy values to
+	 */
+	public void store(ArrayList<? extends Physics> bodyList)
+	{
+		int count = Math.min( this.size, bodyList.size() );
+		for (int i = 0; i < count; i++)
+			this.copyTo( i, bodyList.get(i) );
+	}
+
+	/**
+	 * Update all objects in this batch in the same way as {@link Physics#update(double)}:
+	 * acceleration is applied, speed is reduced if not accelerating and is bounded by the maximum speed,
+	 * and position is updated according to velocity.
+	 * @param dt elapsed time (seconds) since previous iteration of game loop
+	 */
+	public void update(double dt)
+	{
+		int n = this.size;
+		double[] px = this.positionX;
+		double[] py = this.positionY;
+		double[] vx = this.velocityX;
+		double[] vy = this.velocityY;
+		double[] ax = this.accelerationX;
+		double[] ay = this.accelerationY;
+		double[] maxSpeed = this.maximumSpeed;
+		double[] dec = this.decelerationValue;
+
+		// objects not updated using vector instructions are updated one at a time
+		int start = this.vectorized ? PhysicsBatchVector.update(this, dt) : 0;
+
+		for (int i = start; i < n; i++)
+		{
+			// apply acceleration
+			double velX = vx[i] + ax[i] * dt;
+			double velY = vy[i] + ay[i] * dt;
+
+			// decelerate and keep speed within set bounds, preserving direction
+			double scale = Physics.getSpeedScale( velX, velY, ax[i], ay[i], maxSpeed[i], dec[i], dt );
+			if (scale != 1)
+			{
+				velX *= scale;
+				velY *= scale;
+			}
+
+			vx[i] = velX;
+			vy[i] = velY;
+			px[i] += velX * dt;
+			py[i] += velY * dt;
+			ax[i] = 0;
+			ay[i] = 0;
+		}
+	}
+
+	/**
+	 * Update all objects in this batch in the same way as {@link PlatformPhysics#update(double)}:
+	 * horizontal speed is reduced if not accelerating, gravity and acceleration are applied,
+	 * horizontal speed is bounded by the maximum speed, vertical speed is bounded by the terminal velocity,
+	 * and position is updated according to velocity.
+	 * @param dt elapsed time (seconds) since previous iteration of game loop
+	 */
+	public void updatePlatform(double dt)
+	{
+		int n = this.size;
+		double[] px = this.positionX;
+		double[] py = this.positionY;
+		double[] vx = this.velocityX;
+		double[] vy = this.velocityY;
+		double[] ax = this.accelerationX;
+		double[] ay = this.accelerationY;
+		double[] maxSpeed = this.maximumSpeed;
+		double[] dec = this.decelerationValue;
+		double[] g = this.gravity;
+		double[] terminal = this.terminalVelocity;
+
+		// objects not updated using vector instructions are updated one at a time
+		int start = this.vectorized ? PhysicsBatchVector.updatePlatform(this, dt) : 0;
+
+		for (int i = start; i < n; i++)
+		{
+			// decrease walk speed (decelerate) when not accelerating
+			double velX = PlatformPhysics.getWalkVelocity( vx[i], ax[i], ay[i], dec[i], dt );
+
+			// apply gravity and acceleration
+			velX = velX + ax[i] * dt;
+			double velY = vy[i] + (ay[i] + g[i]) * dt;
+
+			// keep speed within set bounds
+			velX = PlatformPhysics.limit( velX, maxSpeed[i] );
+			velY = PlatformPhysics.limit( velY, terminal[i] );
+
+			vx[i] = velX;
+			vy[i] = velY;
+			px[i] += velX * dt;
+			py[i] += velY * dt;
+			ax[i] = 0;
+			ay[i] = 0;
+		}
+	}
+}
@@ -0,0 +1,144 @@
+package net.stemkoski.bagel;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ *  Updates the objects in a {@link PhysicsBatch} several at a time,
+ *  using vector (SIMD) instructions through the JDK Vector API (module <code>jdk.incubator.vector</code>).
+ *  Each method calculates the same values as {@link Physics#update(double)} and {@link PlatformPhysics#update(double)}:
+ *  branches are replaced by selecting between the values of both cases, and speeds that do not need to change
+ *  are multiplied by exactly 1, so the results match the scalar calculations.
+ *  <br><br>
+ *  This class is only used when the module is available (see {@link PhysicsBatch#isVectorApiAvailable()});
+ *  no other class refers to the Vector API, so the library can be used without the module.
+ */
+class PhysicsBatchVector
+{
+	/**
+	 * number and type of values processed at the same time; the largest supported by the processor
+	 */
+	static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+	/**
+	 * Update as many objects as possible, a full vector at a time,
+	 * in the same way as {@link PhysicsBatch#update(double)}.
+	 * @param batch the objects to update
+	 * @param dt elapsed time (seconds) since previous iteration of game loop
+	 * @return number of objects updated; the remaining objects should be updated one at a time
+	 */
+	static int update(PhysicsBatch batch, double dt)
+	{
+		int n = SPECIES.loopBound(batch.size);
+		double[] px = batch.positionX;
+		double[] py = batch.positionY;
+		double[] vx = batch.velocityX;
+		double[] vy = batch.velocityY;
+		double[] ax = batch.accelerationX;
+		double[] ay = batch.accelerationY;
+		double[] maxSpeed = batch.maximumSpeed;
+		double[] dec = batch.decelerationValue;
+
+		DoubleVector zero = DoubleVector.zero(SPECIES);
+		DoubleVector one = DoubleVector.broadcast(SPECIES, 1);
+
+		for (int i = 0; i < n; i += SPECIES.length())
+		{
+			DoubleVector accX = DoubleVector.fromArray(SPECIES, ax, i);
+			DoubleVector accY = DoubleVector.fromArray(SPECIES, ay, i);
+			DoubleVector max = DoubleVector.fromArray(SPECIES, maxSpeed, i);
+			DoubleVector decAmount = DoubleVector.fromArray(SPECIES, dec, i).mul(dt);
+
+			// apply acceleration
+			DoubleVector velX = DoubleVector.fromArray(SPECIES, vx, i).add( accX.mul(dt) );
+			DoubleVector velY = DoubleVector.fromArray(SPECIES, vy, i).add( accY.mul(dt) );
+
+			// see Physics.getSpeedScale
+			VectorMask<Double> decelerating = accX.mul(accX).add( accY.mul(accY) )
+					.compare(VectorOperators.LT, 0.001 * 0.001)
+					.and( decAmount.compare(VectorOperators.NE, 0) );
+			DoubleVector speedSquared = velX.mul(velX).add( velY.mul(velY) );
+			DoubleVector speed = speedSquared.lanewise(VectorOperators.SQRT);
+
+			DoubleVector newSpeed = speed.sub( zero.blend(decAmount, decelerating) );
+			newSpeed = newSpeed.max(zero).min(max);
+
+			VectorMask<Double> changed = decelerating.or( speedSquared.compare(VectorOperators.GT, max.mul(max)) )
+					.and( speed.compare(VectorOperators.NE, 0) );
+			DoubleVector scale = one.blend( newSpeed.div(speed), changed );
+			velX = velX.mul(scale);
+			velY = velY.mul(scale);
+
+			velX.intoArray(vx, i);
+			velY.intoArray(vy, i);
+			DoubleVector.fromArray(SPECIES, px, i).add( velX.mul(dt) ).intoArray(px, i);
+			DoubleVector.fromArray(SPECIES, py, i).add( velY.mul(dt) ).intoArray(py, i);
+			zero.intoArray(ax, i);
+			zero.intoArray(ay, i);
+		}
+		return n;
+	}
+
+	/**
+	 * Update as many objects as possible, a full vector at a time,
+	 * in the same way as {@link PhysicsBatch#updatePlatform(double)}.
+	 * @param batch the objects to update
+	 * @param dt elapsed time (seconds) since previous iteration of game loop
+	 * @return number of objects updated; the remaining objects should be updated one at a time
+	 */
+	static int updatePlatform(PhysicsBatch batch, double dt)
+	{
+		int n = SPECIES.loopBound(batch.size);
+		double[] px = batch.positionX;
+		double[] py = batch.positionY;
+		double[] vx = batch.velocityX;
+		double[] vy = batch.velocityY;
+		double[] ax = batch.accelerationX;
+		double[] ay = batch.accelerationY;
+		double[] maxSpeed = batch.maximumSpeed;
+		double[] dec = batch.decelerationValue;
+		double[] g = batch.gravity;
+		double[] terminal = batch.terminalVelocity;
+
+		DoubleVector zero = DoubleVector.zero(SPECIES);
+		DoubleVector one = DoubleVector.broadcast(SPECIES, 1);
+		DoubleVector minusOne = DoubleVector.broadcast(SPECIES, -1);
+
+		for (int i = 0; i < n; i += SPECIES.length())
+		{
+			DoubleVector accX = DoubleVector.fromArray(SPECIES, ax, i);
+			DoubleVector accY = DoubleVector.fromArray(SPECIES, ay, i);
+			DoubleVector velX = DoubleVector.fromArray(SPECIES, vx, i);
+
+			// decrease walk speed (decelerate) when not accelerating; see PlatformPhysics.getWalkVelocity
+			VectorMask<Double> decelerating = accX.mul(accX).add( accY.mul(accY) )
+					.compare(VectorOperators.LT, 0.001 * 0.001);
+			DoubleVector walkDirection = minusOne.blend( one, velX.compare(VectorOperators.GT, 0) );
+			DoubleVector walkSpeed = velX.abs()
+					.sub( DoubleVector.fromArray(SPECIES, dec, i).mul(dt) )
+					.max(zero);
+			velX = velX.blend( walkSpeed.mul(walkDirection), decelerating );
+
+			// apply gravity and acceleration
+			velX = velX.add( accX.mul(dt) );
+			DoubleVector velY = DoubleVector.fromArray(SPECIES, vy, i)
+					.add( accY.add( DoubleVector.fromArray(SPECIES, g, i) ).mul(dt) );
+
+			// keep speed within set bounds; see PlatformPhysics.limit
+			DoubleVector max = DoubleVector.fromArray(SPECIES, maxSpeed, i);
+			DoubleVector term = DoubleVector.fromArray(SPECIES, terminal, i);
+			velX = velX.max( max.neg() ).min(max);
+			velY = velY.max( term.neg() ).min(term);
+
+			velX.intoArray(vx, i);
+			velY.intoArray(vy, i);
+			DoubleVector.fromArray(SPECIES, px, i).add( velX.mul(dt) ).intoArray(px, i);
+			DoubleVector.fromArray(SPECIES, py, i).add( velY.mul(dt) ).intoArray(py, i);
+			zero.intoArray(ax, i);
+			zero.intoArray(ay, i);
+		}
+		return n;
+	}
+}
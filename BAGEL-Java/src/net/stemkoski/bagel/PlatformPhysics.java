@@ -54,6 +54,56 @@ public class PlatformPhysics extends Physics
         this.velocityVector.y = -this.jumpSpeed;
     }
     
+    /**
+     * Calculate the horizontal velocity after deceleration,
+     *  which is applied if no acceleration (other than gravity) is present.
+     *  Used by {@link #update(double)} and by {@link PhysicsBatch}
+     *  so that both produce the same results.
+     * @param velX horizontal velocity
+     * @param accX x-component of acceleration (not including gravity)
+     * @param accY y-component of acceleration (not including gravity)
+     * @param decelerationValue rate of horizontal speed reduction when not accelerating
+     * @param dt elapsed time (seconds) since previous iteration of game loop
+     * @return horizontal velocity after deceleration
+     */
+    static double getWalkVelocity(double velX, double accX, double accY,
+            double decelerationValue, double dt)
+    {
+        if (accX * accX + accY * accY >= 0.001 * 0.001)
+            return velX;
+
+        double walkDirection;
+        
+        if ( velX > 0 )
+            walkDirection = 1;
+        else
+            walkDirection = -1;
+
+        double walkSpeed = Math.abs( velX );
+
+        walkSpeed -= decelerationValue * dt;
+
+        if (walkSpeed < 0)
+            walkSpeed = 0;
+
+        return walkSpeed * walkDirection;
+    }
+
+    /**
+     * Keep a velocity component within the range from -bound to +bound.
+     * @param value velocity component
+     * @param bound maximum speed in either direction
+     * @return velocity component within bounds
+     */
+    static double limit(double value, double bound)
+    {
+        if (value < -bound)
+            return -bound;
+        if (value > bound)
+            return bound;
+        return value;
+    }
+    
     /**
      * Update the position of this object
      *  according to velocity, acceleration, and gravity.
@@ -67,26 +117,8 @@ public class PlatformPhysics extends Physics
     public void update(double dt)
     {
         // decrease walk speed (decelerate) when not accelerating
-        if (this.accelerationVector.getLength() < 0.001)
-        {
-            double decelerationAmount = decelerationValue * dt;
-            
-            double walkDirection;
-            
-            if ( velocityVector.x > 0 )
-                walkDirection = 1;
-            else
-                walkDirection = -1;
-
-            double walkSpeed = Math.abs( velocityVector.x );
-
-            walkSpeed -= decelerationAmount;
-
-            if (walkSpeed < 0)
-                walkSpeed = 0;
-
-            velocityVector.x = walkSpeed * walkDirection;
-        }
+        this.velocityVector.x = getWalkVelocity( this.velocityVector.x,
+            this.accelerationVector.x, this.accelerationVector.y, this.decelerationValue, dt );
         
         // apply gravity
         this.accelerationVector.addValues(0, gravity);
@@ -96,15 +128,9 @@ public class PlatformPhysics extends Physics
             this.accelerationVector.x * dt, 
             this.accelerationVector.y * dt );
 
-        if (this.velocityVector.x < -this.maximumSpeed)
-            this.velocityVector.x = -this.maximumSpeed;
-        if (this.velocityVector.x > this.maximumSpeed)
-            this.velocityVector.x = this.maximumSpeed;
-            
-        if (this.velocityVector.y < -this.terminalVelocity)
-            this.velocityVector.y = -this.terminalVelocity;
-        if (this.velocityVector.y > this.terminalVelocity)
-            this.velocityVector.y = this.terminalVelocity;
+        // keep speed within set bounds
+        this.velocityVector.x = limit( this.velocityVector.x, this.maximumSpeed );
+        this.velocityVector.y = limit( this.velocityVector.y, this.terminalVelocity );
 
         // update position according to value stored in velocity vector
         this.positionVector.addValues(
@@ -1,7 +1,5 @@
 package net.stemkoski.bagel;
 
-import java.util.Arrays;
-
 /**
  *  A rectangle shape, defined by its position and size, 
  *  particularly useful in collision detection 
@@ -105,17 +103,45 @@ public class Rectangle
 	 */
 	Vector2 getMinTranslationVector(Rectangle other)
 	{
-		Vector2[] differences = { 
-				new Vector2(other.right - this.left, 0), // how to displace this to the right
-				new Vector2(other.left - this.right, 0), // to the left
-				new Vector2(0, other.bottom - this.top), // to the top
-				new Vector2(0, other.top - this.bottom)  // to the bottom
-		};
+		Vector2 result = new Vector2();
+		this.getMinTranslationVector(other, result);
+		return result;
+	}
+
+	/**
+	 * Assuming that this rectangle and other rectangle overlap,
+	 * calculate the minimum length vector required to translate this rectangle
+	 * so that there is no longer any overlap between them,
+	 * and store it in a given vector (avoids creating new objects).
+	 * @param other rectangle to translate away from
+	 * @param result vector in which to store the minimum translation vector
+	 */
+	void getMinTranslationVector(Rectangle other, Vector2 result)
+	{
+		// candidates, in order (when equal in length, the first is used):
+		//   displace this to the right, to the left, to the bottom, to the top
+		double toRight  = other.right - this.left;
+		double toLeft   = other.left - this.right;
+		double toBottom = other.bottom - this.top;
+		double toTop    = other.top - this.bottom;
 
-		// sort method may be used since Vector2 implements Comparable interface
-		Arrays.sort(differences);
+		result.setValues(toRight, 0);
+		double minLength = Math.abs(toRight);
 
-		return differences[0];
+		if ( Math.abs(toLeft) < minLength )
+		{
+			result.setValues(toLeft, 0);
+			minLength = Math.abs(toLeft);
+		}
+		if ( Math.abs(toBottom) < minLength )
+		{
+			result.setValues(0, toBottom);
+			minLength = Math.abs(toBottom);
+		}
+		if ( Math.abs(toTop) < minLength )
+		{
+			result.setValues(0, toTop);
+		}
 	}
 
 	/**
@@ -0,0 +1,309 @@
+package net.stemkoski.bagel;
+
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.paint.Paint;
+import javafx.scene.text.Font;
+import javafx.scene.text.TextAlignment;
+
+/**
+ *  Keeps track of the transform, global alpha and text attributes most recently set on a {@link GraphicsContext},
+ *  so that drawing methods only change these values when they are different.
+ *  Also stores the base transform and visible area of the game world,
+ *  set by the {@link Camera} before drawing.
+ *  Each change adds a command to the canvas, even if the value is the same as before;
+ *  for example, consecutive unrotated and fully opaque sprites can be drawn
+ *  without changing the transform or global alpha at all.
+ *  <br><br>
+ *  All library drawing methods set these values using this class;
+ *  {@link #reset(GraphicsContext)} must be called if they are changed in any other way.
+ *  Only used on the JavaFX application thread (or the thread running a {@link HeadlessRunner}).
+ */
+class RenderState
+{
+	/**
+	 * the context whose state is being tracked
+	 */
+	static GraphicsContext context = null;
+
+	/**
+	 * determines if {@link #globalAlpha} is the current global alpha of {@link #context}
+	 */
+	static boolean alphaKnown = false;
+
+	/**
+	 * most recently set global alpha
+	 */
+	static double globalAlpha;
+
+	/**
+	 * determines if the transform values below are the current transform of {@link #context}
+	 */
+	static boolean transformKnown = false;
+
+	// most recently set transform values (see GraphicsContext.setTransform)
+
+	static double mxx;
+	static double myx;
+	static double mxy;
+	static double myy;
+	static double mxt;
+	static double myt;
+
+	// most recently set text attributes; null (or NaN) if unknown
+
+	static Font font;
+	static Paint fill;
+	static Paint stroke;
+	static double lineWidth;
+	static TextAlignment textAlign;
+
+	/**
+	 * determines if {@link #setTransform(GraphicsContext, double, double, double, double, double, double)}
+	 * combines transforms with the base transform
+	 */
+	static boolean hasBaseTransform = false;
+
+	// base transform values, applied to game world objects (see Camera)
+
+	static double baseXX = 1;
+	static double baseYX = 0;
+	static double baseXY = 0;
+	static double baseYY = 1;
+	static double baseXT = 0;
+	static double baseYT = 0;
+
+	/**
+	 * number of canvas pixels per unit of screen coordinates (see {@link Game#renderScale});
+	 * applied to every transform, including screen transforms
+	 */
+	static double screenScale = 1;
+
+	/**
+	 * area of the game world that is visible; null if unknown.
+	 * Objects completely outside of this area do not need to be drawn.
+	 */
+	static Rectangle viewBoundary = null;
+
+	/**
+	 * Begin tracking a context whose current state is unknown;
+	 * the next transform, global alpha and text attributes will always be set.
+	 * @param context the context to track
+	 */
+	static void reset(GraphicsContext context)
+	{
+		RenderState.context = context;
+		RenderState.alphaKnown = false;
+		RenderState.transformKnown = false;
+		RenderState.font = null;
+		RenderState.fill = null;
+		RenderState.stroke = null;
+		RenderState.lineWidth = Double.NaN;
+		RenderState.textAlign = null;
+	}
+
+	/**
+	 * Set the transform that is combined with all transforms set by
+	 * {@link #setTransform(GraphicsContext, double, double, double, double, double, double)};
+	 * game world coordinates are converted to screen coordinates by this transform.
+	 * @param mxx the X coordinate scaling element
+	 * @param myx the Y coordinate shearing element
+	 * @param mxy the X coordinate shearing element
+	 * @param myy the Y coordinate scaling element
+	 * @param mxt the X coordinate translation element
+	 * @param myt the Y coordinate translation element
+	 */
+	static void setBaseTransform(double mxx, double myx, double mxy, double myy, double mxt, double myt)
+	{
+		baseXX = mxx;
+		baseYX = myx;
+		baseXY = mxy;
+		baseYY = myy;
+		baseXT = mxt;
+		baseYT = myt;
+		hasBaseTransform = !(mxx == 1 && myx == 0 && mxy == 0 && myy == 1 && mxt == 0 && myt == 0);
+	}
+
+	/**
+	 * Stop using a base transform and visible area, so that 
+	 * game world coordinates are the same as screen coordinates.
+	 */
+	static void clearBaseTransform()
+	{
+		setBaseTransform(1,0, 0,1, 0,0);
+		viewBoundary = null;
+	}
+
+	/**
+	 * Set the global alpha of a context, if different from the current value.
+	 * @param context the context to change
+	 * @param alpha value from 0.0 (fully transparent) to 1.0 (fully opaque)
+	 */
+	static void setGlobalAlpha(GraphicsContext context, double alpha)
+	{
+		if (context != RenderState.context)
+			reset(context);
+		else if (alphaKnown && alpha == globalAlpha)
+			return;
+
+		context.setGlobalAlpha(alpha);
+		globalAlpha = alpha;
+		alphaKnown = true;
+	}
+
+	/**
+	 * Set the font of a context, if different from the current font.
+	 * @param context the context to change
+	 * @param font the font to use for text
+	 */
+	static void setFont(GraphicsContext context, Font font)
+	{
+		if (context != RenderState.context)
+			reset(context);
+		else if (font == RenderState.font)
+			return;
+
+		context.setFont(font);
+		RenderState.font = font;
+	}
+
+	/**
+	 * Set the fill paint of a context, if different from the current fill paint.
+	 * @param context the context to change
+	 * @param fill the paint used to fill shapes and text
+	 */
+	static void setFill(GraphicsContext context, Paint fill)
+	{
+		if (context != RenderState.context)
+			reset(context);
+		else if (fill != null && fill.equals(RenderState.fill))
+			return;
+
+		context.setFill(fill);
+		RenderState.fill = fill;
+	}
+
+	/**
+	 * Set the stroke paint and line width of a context, if different from the current values.
+	 * @param context the context to change
+	 * @param stroke the paint used to draw outlines of shapes and text
+	 * @param lineWidth width of outlines
+	 */
+	static void setStroke(GraphicsContext context, Paint stroke, double lineWidth)
+	{
+		if (context != RenderState.context)
+			reset(context);
+		else if (stroke != null && stroke.equals(RenderState.stroke) && lineWidth == RenderState.lineWidth)
+			return;
+
+		context.setStroke(stroke);
+		context.setLineWidth(lineWidth);
+		RenderState.stroke = stroke;
+		RenderState.lineWidth = lineWidth;
+	}
+
+	/**
+	 * Set the text alignment of a context, if different from the current alignment.
+	 * @param context the context to change
+	 * @param textAlign alignment of text with respect to the position where it is drawn
+	 */
+	static void setTextAlign(GraphicsContext context, TextAlignment textAlign)
+	{
+		if (context != RenderState.context)
+			reset(context);
+		else if (textAlign == RenderState.textAlign)
+			return;
+
+		context.setTextAlign(textAlign);
+		RenderState.textAlign = textAlign;
+	}
+
+	/**
+	 * Set the transform of a context (combined with the base transform, if any), 
+	 * if different from the current transform;
+	 * parameters are the same as those of {@link GraphicsContext#setTransform(double, double, double, double, double, double)}.
+	 * @param context the context to change
+	 * @param mxx the X coordinate scaling element of the 3x4 matrix
+	 * @param myx the Y coordinate shearing element of the 3x4 matrix
+	 * @param mxy the X coordinate shearing element of the 3x4 matrix
+	 * @param myy the Y coordinate scaling element of the 3x4 matrix
+	 * @param mxt the X coordinate translation element of the 3x4 matrix
+	 * @param myt the Y coordinate translation element of the 3x4 matrix
+	 */
+	static void setTransform(GraphicsContext context,
+			double mxx, double myx, double mxy, double myy, double mxt, double myt)
+	{
+		if (hasBaseTransform)
+		{
+			setScreenTransform( context,
+				baseXX * mxx + baseXY * myx,  baseYX * mxx + baseYY * myx,
+				baseXX * mxy + baseXY * myy,  baseYX * mxy + baseYY * myy,
+				baseXX * mxt + baseXY * myt + baseXT,  baseYX * mxt + baseYY * myt + baseYT );
+		}
+		else
+		{
+			setScreenTransform(context, mxx, myx, mxy, myy, mxt, myt);
+		}
+	}
+
+	/**
+	 * Set the transform of a context (ignoring the base transform), 
+	 * if different from the current transform;
+	 * used to draw objects at screen coordinates. The transform is scaled by {@link #screenScale}.
+	 * @param context the context to change
+	 * @param mxx the X coordinate scaling element of the 3x4 matrix
+	 * @param myx the Y coordinate shearing element of the 3x4 matrix
+	 * @param mxy the X coordinate shearing element of the 3x4 matrix
+	 * @param myy the Y coordinate scaling element of the 3x4 matrix
+	 * @param mxt the X coordinate translation element of the 3x4 matrix
+	 * @param myt the Y coordinate translation element of the 3x4 matrix
+	 */
+	static void setScreenTransform(GraphicsContext context,
+			double mxx, double myx, double mxy, double myy, double mxt, double myt)
+	{
+		if (screenScale != 1)
+		{
+			mxx *= screenScale;
+			myx *= screenScale;
+			mxy *= screenScale;
+			myy *= screenScale;
+			mxt *= screenScale;
+			myt *= screenScale;
+		}
+
+		if (context != RenderState.context)
+			reset(context);
+		else if (transformKnown && mxx == RenderState.mxx && myx == RenderState.myx
+				&& mxy == RenderState.mxy && myy == RenderState.myy
+				&& mxt == RenderState.mxt && myt == RenderState.myt)
+			return;
+
+		context.setTransform(mxx, myx, mxy, myy, mxt, myt);
+		RenderState.mxx = mxx;
+		RenderState.myx = myx;
+		RenderState.mxy = mxy;
+		RenderState.myy = myy;
+		RenderState.mxt = mxt;
+		RenderState.myt = myt;
+		transformKnown = true;
+	}
+
+	/**
+	 * Set the transform of a context to the identity transform (no translation, rotation or scaling),
+	 * combined with the base transform, if it is not already this transform.
+	 * @param context the context to change
+	 */
+	static void setIdentityTransform(GraphicsContext context)
+	{
+		setTransform(context, 1,0, 0,1, 0,0);
+	}
+
+	/**
+	 * Set the transform of a context to the identity transform, ignoring the base transform,
+	 * so that screen coordinates may be used for drawing.
+	 * @param context the context to change
+	 */
+	static void setScreenIdentityTransform(GraphicsContext context)
+	{
+		setScreenTransform(context, 1,0, 0,1, 0,0);
+	}
+}
@@ -0,0 +1,369 @@
+package net.stemkoski.bagel;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+
+/**
+ *  A uniform grid that sorts {@link Sprite} objects into square cells
+ *  according to the area covered by their boundary rectangles.
+ *  Used by {@link Group} to quickly find sprites that are near each other,
+ *  so that collision checks only consider sprites in the same cells
+ *  rather than every sprite in the group.
+ *  <br><br>
+ *  Each sprite is stored in every cell that its boundary touches.
+ *  When the grid is updated, sprites that remain within the same cells are not moved.
+ *  Cells are stored in a hash table indexed by primitive keys (open addressing with linear probing),
+ *  so that finding a cell does not create any objects.
+ */
+public class SpatialHash
+{
+	/**
+	 * width and height of each (square) grid cell
+	 */
+	double cellSize;
+
+	/**
+	 * initial number of slots in the cell table; always a power of 2
+	 */
+	static final int INITIAL_CAPACITY = 64;
+
+	/**
+	 * key of the cell stored in each slot of {@link #cellLists}, combining column and row (see {@link #getKey(int, int)})
+	 */
+	long[] cellKeys;
+
+	/**
+	 * list of sprites stored in each cell; null for empty slots.
+	 * A cell is stored at the slot given by its key (see {@link #getHomeSlot(long)}),
+	 * or at the following slots if that slot is already used.
+	 */
+	ArrayList<Sprite>[] cellLists;
+
+	/**
+	 * number of cells currently stored in {@link #cellLists}
+	 */
+	int cellCount;
+
+	/**
+	 * number of bits to shift a hashed key by, to get a slot index between 0 and the table size
+	 */
+	int shift;
+
+	/**
+	 * range of cells (minimum column, minimum row, maximum column, maximum row)
+	 * each sprite was stored in when the grid was last updated
+	 */
+	IdentityHashMap<Sprite, int[]> cellRangeMap;
+
+	/**
+	 * Initialize an empty grid.
+	 * @param cellSize width and height of each grid cell;
+	 *   typically one to two times the size of the sprites being stored
+	 */
+	SpatialHash(double cellSize)
+	{
+		this.cellSize = cellSize;
+		this.allocate(INITIAL_CAPACITY);
+		this.cellRangeMap = new IdentityHashMap<Sprite, int[]>();
+	}
+
+	/**
+	 * Create an empty cell table.
+	 * @param capacity number of slots in the table; must be a power of 2
+	 */
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	void allocate(int capacity)
+	{
+		this.cellKeys = new long[capacity];
+		this.cellLists = (ArrayList<Sprite>[]) new ArrayList[capacity];
+		this.cellCount = 0;
+		this.shift = 64 - Integer.numberOfTrailingZeros(capacity);
+	}
+
+	/**
+	 * Combine a column and row index into a single key for {@link #cellLists}.
+	 * @param col cell column index
+	 * @param row cell row index
+	 * @return key corresponding to the given cell
+	 */
+	static long getKey(int col, int row)
+	{
+		return ((long)col << 32) | (row & 0xFFFFFFFFL);
+	}
+
+	/**
+	 * Calculate the slot a cell is stored in when no other cell is stored there.
+	 * Keys are multiplied by a large odd constant, so that nearby cells are spread throughout the table.
+	 * @param key key of cell
+	 * @return preferred slot of the cell in {@link #cellLists}
+	 */
+	int getHomeSlot(long key)
+	{
+		return (int)( (key * 0x9E3779B97F4A7C15L) >>> this.shift );
+	}
+
+	/**
+	 * Find the slot containing a cell, or the empty slot where it would be stored.
+	 * @param key key of cell
+	 * @return slot in {@link #cellLists} for the cell
+	 */
+	int getSlot(long key)
+	{
+		int mask = this.cellLists.length - 1;
+		int slot = this.getHomeSlot(key);
+		while (this.cellLists[slot] != null && this.cellKeys[slot] != key)
+			slot = (slot + 1) & mask;
+		return slot;
+	}
+
+	/**
+	 * Get the list of sprites stored in a cell.
+	 * @param key key of cell
+	 * @return list of sprites in the cell, or null if the cell is empty
+	 */
+	ArrayList<Sprite> getCell(long key)
+	{
+		return this.cellLists[ this.getSlot(key) ];
+	}
+
+	/**
+	 * Get the list of sprites stored in a cell, adding an empty list if there is none.
+	 * The table is doubled in size when more than half of the slots are used.
+	 * @param key key of cell
+	 * @return list of sprites in the cell
+	 */
+	ArrayList<Sprite> getOrCreateCell(long key)
+	{
+		int slot = this.getSlot(key);
+		if (this.cellLists[slot] != null)
+			return this.cellLists[slot];
+
+		if ( 2 * (this.cellCount + 1) > this.cellLists.length )
+		{
+			this.resize(2 * this.cellLists.length);
+			slot = this.getSlot(key);
+		}
+
+		ArrayList<Sprite> cell = new ArrayList<Sprite>();
+		this.cellKeys[slot] = key;
+		this.cellLists[slot] = cell;
+		this.cellCount++;
+		return cell;
+	}
+
+	/**
+	 * Remove the cell stored in a slot. Cells stored after it (because their preferred slots were used)
+	 * are moved back, so that they can still be found by {@link #getSlot(long)}.
+	 * @param slot slot in {@link #cellLists} of the cell to remove
+	 */
+	void removeCell(int slot)
+	{
+		int mask = this.cellLists.length - 1;
+		this.cellLists[slot] = null;
+		this.cellCount--;
+
+		int next = (slot + 1) & mask;
+		while (this.cellLists[next] != null)
+		{
+			// a cell can move to the empty slot if that slot is between its preferred slot and its current slot
+			int home = this.getHomeSlot( this.cellKeys[next] );
+			if ( ((next - home) & mask) >= ((next - slot) & mask) )
+			{
+				this.cellKeys[slot] = this.cellKeys[next];
+				this.cellLists[slot] = this.cellLists[next];
+				this.cellLists[next] = null;
+				slot = next;
+			}
+			next = (next + 1) & mask;
+		}
+	}
+
+	/**
+	 * Move all cells to a new table with a different number of slots.
+	 * @param capacity number of slots in the new table; must be a power of 2
+	 */
+	void resize(int capacity)
+	{
+		long[] oldKeys = this.cellKeys;
+		ArrayList<Sprite>[] oldLists = this.cellLists;
+		this.allocate(capacity);
+
+		for (int i = 0; i < oldLists.length; i++)
+		{
+			if (oldLists[i] == null)
+				continue;
+			int slot = this.getSlot( oldKeys[i] );
+			this.cellKeys[slot] = oldKeys[i];
+			this.cellLists[slot] = oldLists[i];
+			this.cellCount++;
+		}
+	}
+
+	/**
+	 * Calculate the column index of the cell containing an x-coordinate.
+	 * @param x x-coordinate
+	 * @return column index of cell containing x
+	 */
+	int getCol(double x)
+	{
+		return (int)Math.floor(x / this.cellSize);
+	}
+
+	/**
+	 * Calculate the row index of the cell containing a y-coordinate.
+	 * @param y y-coordinate
+	 * @return row index of cell containing y
+	 */
+	int getRow(double y)
+	{
+		return (int)Math.floor(y / this.cellSize);
+	}
+
+	/**
+	 * Add a sprite to every cell covered by its boundary.
+	 * @param sprite sprite to add to this grid
+	 */
+	void insert(Sprite sprite)
+	{
+		if ( this.cellRangeMap.containsKey(sprite) )
+			return;
+
+		Rectangle rect = sprite.getBoundary();
+		int[] range = { getCol(rect.left), getRow(rect.top), getCol(rect.right), getRow(rect.bottom) };
+		this.cellRangeMap.put(sprite, range);
+		this.addToCells(sprite, range);
+	}
+
+	/**
+	 * Remove a sprite from every cell it is currently stored in.
+	 * @param sprite sprite to remove from this grid
+	 */
+	void remove(Sprite sprite)
+	{
+		int[] range = this.cellRangeMap.remove(sprite);
+		if (range != null)
+			this.removeFromCells(sprite, range);
+	}
+
+	/**
+	 * Move a sprite to the cells covered by its current boundary,
+	 * if they are different from the cells it is currently stored in.
+	 * @param sprite sprite whose position may have changed
+	 */
+	void update(Sprite sprite)
+	{
+		int[] range = this.cellRangeMap.get(sprite);
+		if (range == null)
+		{
+			this.insert(sprite);
+			return;
+		}
+
+		Rectangle rect = sprite.getBoundary();
+		int minCol = getCol(rect.left);
+		int minRow = getRow(rect.top);
+		int maxCol = getCol(rect.right);
+		int maxRow = getRow(rect.bottom);
+
+		// sprite still covers the same cells; nothing to move
+		if (minCol == range[0] && minRow == range[1] && maxCol == range[2] && maxRow == range[3])
+			return;
+
+		this.removeFromCells(sprite, range);
+		range[0] = minCol;
+		range[1] = minRow;
+		range[2] = maxCol;
+		range[3] = maxRow;
+		this.addToCells(sprite, range);
+	}
+
+	/**
+	 * Remove all sprites from this grid.
+	 */
+	void clear()
+	{
+		Arrays.fill(this.cellLists, null);
+		this.cellCount = 0;
+		this.cellRangeMap.clear();
+	}
+
+	/**
+	 * Add a sprite to the lists of all cells in a range.
+	 * @param sprite sprite to add
+	 * @param range cell range (minimum column, minimum row, maximum column, maximum row)
+	 */
+	void addToCells(Sprite sprite, int[] range)
+	{
+		for (int col = range[0]; col <= range[2]; col++)
+		{
+			for (int row = range[1]; row <= range[3]; row++)
+			{
+				this.getOrCreateCell( getKey(col, row) ).add(sprite);
+			}
+		}
+	}
+
+	/**
+	 * Remove a sprite from the lists of all cells in a range;
+	 * cells that become empty are discarded.
+	 * @param sprite sprite to remove
+	 * @param range cell range (minimum column, minimum row, maximum column, maximum row)
+	 */
+	void removeFromCells(Sprite sprite, int[] range)
+	{
+		for (int col = range[0]; col <= range[2]; col++)
+		{
+			for (int row = range[1]; row <= range[3]; row++)
+			{
+				int slot = this.getSlot( getKey(col, row) );
+				ArrayList<Sprite> cell = this.cellLists[slot];
+				if (cell == null)
+					continue;
+				cell.remove(sprite);
+				if ( cell.isEmpty() )
+					this.removeCell(slot);
+			}
+		}
+	}
+
+	/**
+	 * Add all sprites whose boundaries overlap a rectangle to a list.
+	 * Each sprite is added at most once, even if it is stored in several cells.
+	 * @param rect rectangle to check for overlap
+	 * @param exclude a sprite that should not be added (typically the sprite whose boundary is rect); may be null
+	 * @param resultList list that overlapping sprites are added to
+	 */
+	void queryOverlapping(Rectangle rect, Sprite exclude, ArrayList<Sprite> resultList)
+	{
+		int minCol = getCol(rect.left);
+		int minRow = getRow(rect.top);
+		int maxCol = getCol(rect.right);
+		int maxRow = getRow(rect.bottom);
+
+		for (int col = minCol; col <= maxCol; col++)
+		{
+			for (int row = minRow; row <= maxRow; row++)
+			{
+				ArrayList<Sprite> cell = this.getCell( getKey(col, row) );
+				if (cell == null)
+					continue;
+
+				for (Sprite other : cell)
+				{
+					if (other == exclude)
+						continue;
+
+					// a sprite stored in several cells is only reported from
+					//   the first cell shared by both ranges, to avoid duplicates
+					int[] range = this.cellRangeMap.get(other);
+					if ( col != Math.max(minCol, range[0]) || row != Math.max(minRow, range[1]) )
+						continue;
+
+					if ( rect.overlaps( other.getBoundary() ) )
+						resultList.add(other);
+				}
+			}
+		}
+	}
+}
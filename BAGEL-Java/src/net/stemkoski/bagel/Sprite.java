@@ -2,6 +2,7 @@ package net.stemkoski.bagel;
 
 import java.util.ArrayList;
 import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.image.Image;
 
 /**
  * Sprites represent game world entities: characters, environment, items, obstacles, etc.
@@ -21,6 +22,19 @@ public class Sprite extends Entity
 	 */
 	public double y;
 	
+	/**
+	 * x-coordinate of center of sprite before the most recent fixed step;
+	 * used to interpolate position when rendering (see {@link Game#setFixedTimestep(double, int)}).
+	 * NaN if no fixed step has been run since this sprite was created.
+	 */
+	double previousX;
+
+	/**
+	 * y-coordinate of center of sprite before the most recent fixed step;
+	 * see {@link #previousX}
+	 */
+	double previousY;
+
 	/**
 	 * image displayed when rendering this sprite
 	 */
@@ -89,6 +103,69 @@ public class Sprite extends Entity
 	 */
 	public Animation animation;
 
+	// parallel updates
+
+	/**
+	 *  determines whether this sprite may be updated (see {@link #act(double)})
+	 *  on a background thread, at the same time as other independent sprites,
+	 *  when its {@link Group} uses {@link Group#enableParallelAct(int)}; false by default.
+	 *  <br><br>
+	 *  Only set this to true if the physics, animation, and actions of this sprite
+	 *  affect only this sprite. While updating, the following may be changed safely:
+	 *  <ul>
+	 *  <li>the fields of this sprite: x, y, width, height, visible, angle, opacity,
+	 *      mirrored, flipped, and the texture (for example, with {@link #setTexture(Texture)})</li>
+	 *  <li>the {@link Physics} and {@link Animation} objects of this sprite,
+	 *      provided they are not shared with any other sprite</li>
+	 *  <li>the actions in {@link #actionList}</li>
+	 *  <li>the groups containing sprites, using {@link Group#addEntity(Entity)},
+	 *      {@link Group#removeEntity(Entity)} and {@link #remove()}</li>
+	 *  </ul>
+	 *  The following must not be read or changed while updating:
+	 *  the fields of any other sprite, any other methods of a Group,
+	 *  and any other shared objects (such as fields of a {@link Game}).
+	 */
+	public boolean independent;
+
+	// cached rotation terms (see updateTransformTerms)
+
+	/**
+	 * values of {@link #angle}, {@link #mirrored} and {@link #flipped}
+	 * used to calculate the transform terms below; angle is NaN if not yet calculated
+	 */
+	double transformAngle;
+	boolean transformMirrored;
+	boolean transformFlipped;
+
+	/**
+	 * rotation and scaling terms of the transform used when drawing this sprite
+	 * (see {@link GraphicsContext#setTransform(double, double, double, double, double, double)})
+	 */
+	double mxx, myx, mxy, myy;
+
+	/**
+	 * determines if this sprite is drawn without rotation or reflection,
+	 * in which case the transform only contains a translation
+	 */
+	boolean axisAligned;
+
+	/**
+	 * set by the {@link Group} containing this sprite to indicate that this sprite
+	 * may be visible in the current frame (see {@link Group#cullStamp})
+	 */
+	int cullStamp;
+
+	/**
+	 * image used to calculate {@link Entity#imageKey}; the key is only calculated again when the image changes
+	 */
+	Image imageKeyImage;
+
+	/**
+	 * Reusable vector for storing minimum translation vectors during collision resolution
+	 * (one per thread), to avoid creating new objects for each collision.
+	 */
+	static final ThreadLocal<Vector2> translationVector = ThreadLocal.withInitial( Vector2::new );
+
 	/**
 	 * initialize default values of sprite properties
 	 */
@@ -96,7 +173,10 @@ public class Sprite extends Entity
 	{  
 		this.x = 0;
 		this.y = 0;
+		this.previousX = Double.NaN;
+		this.previousY = Double.NaN;
 		this.visible  = true;
+		this.independent = false;
 
 		// collision
 		this.boundary = new Rectangle();
@@ -106,12 +186,13 @@ public class Sprite extends Entity
 		this.angle = 0;
 		this.mirrored = false;
 		this.flipped  = false;
+		this.transformAngle = Double.NaN;
 
 		this.physics   = null;
 		this.animation = null;
 		
 		// actions
-		this.actionList = new ArrayList<Action>();
+		this.actionList = new ActionList();
 	}
 
 	// basic methods
@@ -125,6 +206,7 @@ public class Sprite extends Entity
 	{
 		this.x = x;
 		this.y = y;
+		this.moved();
 	}
 
 	/**
@@ -136,8 +218,20 @@ public class Sprite extends Entity
 	{
 		this.x += deltaX;
 		this.y += deltaY;
+		this.moved();
 	}   
 
+	/**
+	 * Inform the {@link Group} containing this sprite that its position or size has changed,
+	 * so that the grid used by the group (see {@link Group#enableSpatialHash(double)}) remains up to date.
+	 * Called by the methods of this class that move or resize this sprite.
+	 */
+	void moved()
+	{
+		if (this.container != null)
+			this.container.spriteMoved(this);
+	}
+
 	/**
 	 * Set the texture to be displayed when rendering this sprite.
 	 * Also sets width and height of this sprite.
@@ -148,6 +242,7 @@ public class Sprite extends Entity
 		this.texture = tex;
 		this.width   = tex.region.width;
 		this.height  = tex.region.height;
+		this.moved();
 	}
 
 	/**
@@ -159,6 +254,7 @@ public class Sprite extends Entity
 	{
 		this.width = width;
 		this.height = height;
+		this.moved();
 	}
 	
 	/**
@@ -170,6 +266,49 @@ public class Sprite extends Entity
 		if ( !this.visible )
 			return;
 
+		this.updateTransformTerms();
+
+		// when using a fixed timestep, draw between previous and current positions
+		double drawX = this.x;
+		double drawY = this.y;
+		if ( !Double.isNaN(this.previousX) )
+		{
+			drawX = this.previousX + (this.x - this.previousX) * Game.interpolationAlpha;
+			drawY = this.previousY + (this.y - this.previousY) * Game.interpolationAlpha;
+		}
+
+		RenderState.setGlobalAlpha(context, this.opacity);
+
+		// unrotated sprites share the identity transform, and are positioned by drawImage
+		if (this.axisAligned)
+		{
+			RenderState.setIdentityTransform(context);
+			drawX -= this.width/2;
+			drawY -= this.height/2;
+		}
+		else
+		{
+			RenderState.setTransform(context, this.mxx, this.myx, this.mxy, this.myy, drawX, drawY);
+			drawX = -this.width/2;
+			drawY = -this.height/2;
+		}
+
+		// image, 4 source parameters, 4 destination parameters
+		context.drawImage(this.texture.image, 
+				this.texture.region.left, this.texture.region.top, this.texture.region.width, this.texture.region.height,
+				drawX, drawY, this.width, this.height);
+	}
+
+	/**
+	 * Recalculate the rotation and scaling terms used when drawing this sprite,
+	 * only if {@link #angle}, {@link #mirrored} or {@link #flipped} have changed since the last calculation.
+	 */
+	void updateTransformTerms()
+	{
+		if (this.angle == this.transformAngle 
+				&& this.mirrored == this.transformMirrored && this.flipped == this.transformFlipped)
+			return;
+
 		double A = this.angle * Math.PI/180;
 		double scaleX = 1;
 		double scaleY = 1;
@@ -179,12 +318,16 @@ public class Sprite extends Entity
 			scaleY *= -1;
 		double cosA = Math.cos(A);
 		double sinA = Math.sin(A);
-		context.setTransform(scaleX*cosA, scaleX*sinA, -scaleY*sinA, scaleY*cosA, this.x, this.y);
-		context.setGlobalAlpha(this.opacity);
-		// image, 4 source parameters, 4 destination parameters
-		context.drawImage(this.texture.image, 
-				this.texture.region.left, this.texture.region.top, this.texture.region.width, this.texture.region.height,
-				-this.width/2, -this.height/2, this.width, this.height);
+
+		this.mxx =  scaleX*cosA;
+		this.myx =  scaleX*sinA;
+		this.mxy = -scaleY*sinA;
+		this.myy =  scaleY*cosA;
+		this.axisAligned = (this.mxx == 1 && this.myx == 0 && this.mxy == 0 && this.myy == 1);
+
+		this.transformAngle = this.angle;
+		this.transformMirrored = this.mirrored;
+		this.transformFlipped = this.flipped;
 	}
 
 	// collision methods
@@ -200,6 +343,54 @@ public class Sprite extends Entity
 		return this.boundary;
 	}
 
+	/**
+	 * Determine if this sprite, as drawn, is completely outside of an area;
+	 * allows for rotation of the texture, and for drawing between the previous and current positions
+	 * (see {@link Game#setFixedTimestep(double, int)}).
+	 * @param area area to check (for example, the visible area of the game world)
+	 * @return true if no part of this sprite is drawn in the area
+	 */
+	boolean isOutside(Rectangle area)
+	{
+		double halfWidth  = this.width/2;
+		double halfHeight = this.height/2;
+
+		// a rotated texture remains within a circle around the center
+		if (this.angle != 0)
+		{
+			halfWidth  = Math.sqrt(this.width * this.width + this.height * this.height) / 2;
+			halfHeight = halfWidth;
+		}
+
+		if ( !Double.isNaN(this.previousX) )
+		{
+			halfWidth  += Math.abs(this.x - this.previousX);
+			halfHeight += Math.abs(this.y - this.previousY);
+		}
+
+		return (this.x + halfWidth < area.left) || (this.x - halfWidth > area.right)
+				|| (this.y + halfHeight < area.top) || (this.y - halfHeight > area.bottom);
+	}
+
+	/**
+	 * Get the greatest distance by which this sprite, as drawn, may extend beyond its boundary rectangle
+	 * (see {@link #getBoundary()}), due to rotation and to drawing between the previous and current positions;
+	 * consistent with {@link #isOutside(Rectangle)}.
+	 * Rotation is allowed for even if the angle is currently 0, since {@link #angle} may be changed at any time.
+	 * @return distance beyond the boundary rectangle
+	 */
+	double getDrawMargin()
+	{
+		// a rotated texture remains within a circle around the center
+		double margin = ( Math.sqrt(this.width * this.width + this.height * this.height)
+				- Math.min(this.width, this.height) ) / 2;
+
+		if ( !Double.isNaN(this.previousX) )
+			margin += Math.max( Math.abs(this.x - this.previousX), Math.abs(this.y - this.previousY) );
+
+		return margin;
+	}
+
 	/**
 	 * Check if this sprite is overlapping another sprite.
 	 * @param other sprite to check for overlap with
@@ -218,7 +409,8 @@ public class Sprite extends Entity
 	{
 		if ( this.isOverlapping(other) )
 		{
-			Vector2 mtv = this.getBoundary().getMinTranslationVector( other.getBoundary() );
+			Vector2 mtv = Sprite.translationVector.get();
+			this.getBoundary().getMinTranslationVector( other.getBoundary(), mtv );
 			this.moveBy(mtv.x, mtv.y);
 		}
 	}
@@ -243,6 +435,7 @@ public class Sprite extends Entity
 	{
 		this.x += distance * Math.cos(angleDegrees * Math.PI/180);
 		this.y += distance * Math.sin(angleDegrees * Math.PI/180);
+		this.moved();
 	}
 
 	/**
@@ -272,6 +465,7 @@ public class Sprite extends Entity
 			this.y = this.height/2;
 		if (this.y + this.height/2 > screenHeight)
 			this.y = screenHeight - this.height/2;
+		this.moved();
 	}
 
 	/**
@@ -282,6 +476,9 @@ public class Sprite extends Entity
 	 */
 	public void wrapToScreen(double screenWidth, double screenHeight)
 	{
+		double oldX = this.x;
+		double oldY = this.y;
+
 		if (this.x + this.width/2 < 0)
 			this.x = screenWidth + this.width/2;
 		if (this.x - this.width/2 > screenWidth)
@@ -290,6 +487,11 @@ public class Sprite extends Entity
 			this.y = screenHeight + this.height/2;
 		if (this.y - this.height/2 > screenHeight)
 			this.y = -this.height/2;
+
+		// avoid interpolating across the screen after wrapping
+		this.previousX += this.x - oldX;
+		this.previousY += this.y - oldY;
+		this.moved();
 	}
 
 	/**
@@ -330,7 +532,8 @@ public class Sprite extends Entity
 	{
 		if ( this.isOverlapping(other) )
 		{
-			Vector2 mtv = this.getBoundary().getMinTranslationVector( other.getBoundary() );
+			Vector2 mtv = Sprite.translationVector.get();
+			this.getBoundary().getMinTranslationVector( other.getBoundary(), mtv );
 
 			// prevent overlap
 			this.moveBy(mtv.x, mtv.y);
@@ -357,6 +560,16 @@ public class Sprite extends Entity
 		this.height    = anim.currentTexture.region.height;
 	}
 	
+	/**
+	 * Store the current position of this sprite before a fixed step is simulated.
+	 */
+	@Override
+	void savePreviousState()
+	{
+		this.previousX = this.x;
+		this.previousY = this.y;
+	}
+
 	// actions
 
 	/**
@@ -400,13 +613,14 @@ public class Sprite extends Entity
 		}
 		
 		// update all actions (in parallel, by default)
-		ArrayList<Action> actionListCopy = new ArrayList<Action>(this.actionList);
-		for (Action a : actionListCopy)
-		{
-			boolean finished = a.apply(this, deltaTime);
-			if (finished)
-				this.actionList.remove(a);
-		}
+		if ( this.actionList.isEmpty() )
+			return;
+
+		// in case actionList has been replaced by a different list
+		if ( !(this.actionList instanceof ActionList) )
+			this.actionList = new ActionList(this.actionList);
+
+		((ActionList)this.actionList).applyAll(this, deltaTime);
 	}
 
 }
\ No newline at end of file
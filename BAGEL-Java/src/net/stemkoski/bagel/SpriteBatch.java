@@ -0,0 +1,304 @@
+package net.stemkoski.bagel;
+
+import java.util.Arrays;
+import javafx.scene.canvas.GraphicsContext;
+
+/**
+ *  A collection of many simple sprites (such as particles) that share a single {@link Texture},
+ *  stored as arrays of values (one array per property) rather than as separate {@link Sprite} objects.
+ *  Updating the position of every sprite is then a single loop over arrays,
+ *  which is much faster than updating many Sprite objects when there are many thousands of them.
+ *  <br><br>
+ *  Each sprite in the batch is accessed through a {@link SpriteHandle},
+ *  which provides methods similar to those of Sprite and {@link Physics}. For example:
+ *  <pre>{@code
+ *  SpriteBatch sparks = new SpriteBatch( Texture.load("assets/spark.png") );
+ *  for (int n = 0; n < 10000; n++)
+ *  {
+ *      SpriteHandle spark = sparks.addSprite(400, 300);
+ *      spark.setPhysics(0, 200, 50);
+ *      spark.setSpeed( Math.random() * 200 );
+ *      spark.setMotionAngle( Math.random() * 360 );
+ *  }
+ *  group.addEntity(sparks);
+ *  }</pre>
+ *  Sprites in a batch do not support {@link Action}s or {@link Animation}s.
+ *  When a sprite is removed, the last sprite in the batch takes its place,
+ *  so the drawing order of sprites may change.
+ */
+public class SpriteBatch extends Entity
+{
+	/**
+	 * image displayed when rendering sprites in this batch
+	 */
+	Texture texture;
+
+	/**
+	 * number of sprites in this batch
+	 */
+	int size;
+
+	/**
+	 * handle objects used to access each sprite; index in this array matches index in value arrays
+	 */
+	SpriteHandle[] handles;
+
+	// core properties
+
+	double[] x;
+	double[] y;
+	double[] width;
+	double[] height;
+	double[] angle;
+	double[] opacity;
+	boolean[] visible;
+
+	// physics properties (see Physics class)
+
+	boolean[] physicsEnabled;
+	double[] velocityX;
+	double[] velocityY;
+	double[] accelerationX;
+	double[] accelerationY;
+	double[] accelerationValue;
+	double[] maximumSpeed;
+	double[] decelerationValue;
+
+	/**
+	 * Initialize an empty batch.
+	 * @param texture image displayed when rendering sprites in this batch
+	 */
+	public SpriteBatch(Texture texture)
+	{
+		this.texture = texture;
+		this.size = 0;
+		this.allocate(64);
+	}
+
+	/**
+	 * Resize all value arrays to the given capacity, preserving existing values.
+	 * @param capacity number of sprites that can be stored without resizing
+	 */
+	void allocate(int capacity)
+	{
+		if (this.handles == null)
+		{
+			this.handles = new SpriteHandle[capacity];
+			this.x = new double[capacity];
+			this.y = new double[capacity];
+			this.width = new double[capacity];
+			this.height = new double[capacity];
+			this.angle = new double[capacity];
+			this.opacity = new double[capacity];
+			this.visible = new boolean[capacity];
+			this.physicsEnabled = new boolean[capacity];
+			this.velocityX = new double[capacity];
+			this.velocityY = new double[capacity];
+			this.accelerationX = new double[capacity];
+			this.accelerationY = new double[capacity];
+			this.accelerationValue = new double[capacity];
+			this.maximumSpeed = new double[capacity];
+			this.decelerationValue = new double[capacity];
+			return;
+		}
+
+		this.handles = Arrays.copyOf(this.handles, capacity);
+		this.x = Arrays.copyOf(this.x, capacity);
+		this.y = Arrays.copyOf(this.y, capacity);
+		this.width = Arrays.copyOf(this.width, capacity);
+		this.height = Arrays.copyOf(this.height, capacity);
+		this.angle = Arrays.copyOf(this.angle, capacity);
+		this.opacity = Arrays.copyOf(this.opacity, capacity);
+		this.visible = Arrays.copyOf(this.visible, capacity);
+		this.physicsEnabled = Arrays.copyOf(this.physicsEnabled, capacity);
+		this.velocityX = Arrays.copyOf(this.velocityX, capacity);
+		this.velocityY = Arrays.copyOf(this.velocityY, capacity);
+		this.accelerationX = Arrays.copyOf(this.accelerationX, capacity);
+		this.accelerationY = Arrays.copyOf(this.accelerationY, capacity);
+		this.accelerationValue = Arrays.copyOf(this.accelerationValue, capacity);
+		this.maximumSpeed = Arrays.copyOf(this.maximumSpeed, capacity);
+		this.decelerationValue = Arrays.copyOf(this.decelerationValue, capacity);
+	}
+
+	/**
+	 * Add a sprite to this batch, with the same size as the texture,
+	 * fully opaque, unrotated, and without physics.
+	 * @param x x-coordinate of center of sprite
+	 * @param y y-coordinate of center of sprite
+	 * @return handle used to access the new sprite
+	 */
+	public SpriteHandle addSprite(double x, double y)
+	{
+		if (this.size == this.handles.length)
+			this.allocate(this.size * 2);
+
+		int i = this.size;
+		this.x[i] = x;
+		this.y[i] = y;
+		this.width[i] = this.texture.region.width;
+		this.height[i] = this.texture.region.height;
+		this.angle[i] = 0;
+		this.opacity[i] = 1;
+		this.visible[i] = true;
+		this.physicsEnabled[i] = false;
+		this.velocityX[i] = 0;
+		this.velocityY[i] = 0;
+		this.accelerationX[i] = 0;
+		this.accelerationY[i] = 0;
+		this.accelerationValue[i] = 0;
+		this.maximumSpeed[i] = 0;
+		this.decelerationValue[i] = 0;
+
+		SpriteHandle handle = new SpriteHandle(this, i);
+		this.handles[i] = handle;
+		this.size++;
+		return handle;
+	}
+
+	/**
+	 * Remove the sprite at an index by moving the last sprite in this batch into its place.
+	 * @param i index of sprite to remove
+	 */
+	void removeSprite(int i)
+	{
+		int last = this.size - 1;
+		this.handles[i].batch = null;
+
+		if (i != last)
+		{
+			this.x[i] = this.x[last];
+			this.y[i] = this.y[last];
+			this.width[i] = this.width[last];
+			this.height[i] = this.height[last];
+			this.angle[i] = this.angle[last];
+			this.opacity[i] = this.opacity[last];
+			this.visible[i] = this.visible[last];
+			this.physicsEnabled[i] = this.physicsEnabled[last];
+			this.velocityX[i] = this.velocityX[last];
+			this.velocityY[i] = this.velocityY[last];
+			this.accelerationX[i] = this.accelerationX[last];
+			this.accelerationY[i] = this.accelerationY[last];
+			this.accelerationValue[i] = this.accelerationValue[last];
+			this.maximumSpeed[i] = this.maximumSpeed[last];
+			this.decelerationValue[i] = this.decelerationValue[last];
+			this.handles[i] = this.handles[last];
+			this.handles[i].index = i;
+		}
+
+		this.handles[last] = null;
+		this.size--;
+	}
+
+	/**
+	 * Remove all sprites from this batch.
+	 */
+	public void clear()
+	{
+		for (int i = 0; i < this.size; i++)
+		{
+			this.handles[i].batch = null;
+			this.handles[i] = null;
+		}
+		this.size = 0;
+	}
+
+	/**
+	 * Get the number of sprites in this batch.
+	 * @return the number of sprites in this batch
+	 */
+	public int getSize()
+	{
+		return this.size;
+	}
+
+	/**
+	 * Get the handle used to access a sprite in this batch.
+	 * Indices change when sprites are removed, so handles should be kept instead of indices.
+	 * @param index index of sprite, from 0 to {@link #getSize()} - 1
+	 * @return handle used to access the sprite
+	 */
+	public SpriteHandle get(int index)
+	{
+		return this.handles[index];
+	}
+
+	/**
+	 * Update the position of each sprite that uses physics,
+	 * according to velocity and acceleration; the same calculation as {@link Physics#update(double)}.
+	 * @param deltaTime elapsed time (seconds) since previous iteration of game loop
+	 */
+	@Override
+	void act(double deltaTime)
+	{
+		for (int i = 0; i < this.size; i++)
+		{
+			if ( !this.physicsEnabled[i] )
+				continue;
+
+			double ax = this.accelerationX[i];
+			double ay = this.accelerationY[i];
+
+			// apply acceleration
+			double vx = this.velocityX[i] + ax * deltaTime;
+			double vy = this.velocityY[i] + ay * deltaTime;
+
+			// decelerate and keep speed within set bounds, preserving direction
+			double scale = Physics.getSpeedScale( vx, vy, ax, ay,
+					this.maximumSpeed[i], this.decelerationValue[i], deltaTime );
+			if (scale != 1)
+			{
+				vx *= scale;
+				vy *= scale;
+			}
+			this.velocityX[i] = vx;
+			this.velocityY[i] = vy;
+
+			// update position according to velocity
+			this.x[i] += vx * deltaTime;
+			this.y[i] += vy * deltaTime;
+
+			// reset acceleration
+			this.accelerationX[i] = 0;
+			this.accelerationY[i] = 0;
+		}
+	}
+
+	/**
+	 * Render all visible sprites in this batch to a canvas.
+	 * Unrotated sprites are drawn without changing the transform.
+	 */
+	@Override
+	void draw(GraphicsContext context)
+	{
+		Texture tex = this.texture;
+		for (int i = 0; i < this.size; i++)
+		{
+			if ( !this.visible[i] )
+				continue;
+
+			RenderState.setGlobalAlpha(context, this.opacity[i]);
+
+			double drawX, drawY;
+			if (this.angle[i] == 0)
+			{
+				RenderState.setIdentityTransform(context);
+				drawX = this.x[i] - this.width[i]/2;
+				drawY = this.y[i] - this.height[i]/2;
+			}
+			else
+			{
+				double A = this.angle[i] * Math.PI/180;
+				double cosA = Math.cos(A);
+				double sinA = Math.sin(A);
+				RenderState.setTransform(context, cosA, sinA, -sinA, cosA, this.x[i], this.y[i]);
+				drawX = -this.width[i]/2;
+				drawY = -this.height[i]/2;
+			}
+
+			// image, 4 source parameters, 4 destination parameters
+			context.drawImage(tex.image,
+					tex.region.left, tex.region.top, tex.region.width, tex.region.height,
+					drawX, drawY, this.width[i], this.height[i]);
+		}
+	}
+}
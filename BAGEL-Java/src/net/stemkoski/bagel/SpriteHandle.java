@@ -0,0 +1,298 @@
+package net.stemkoski.bagel;
+
+/**
+ *  Provides access to a single sprite stored in a {@link SpriteBatch},
+ *  using methods similar to those of {@link Sprite} and {@link Physics}.
+ *  Handles are created by {@link SpriteBatch#addSprite(double, double)};
+ *  once the sprite has been removed, the handle should no longer be used.
+ */
+public class SpriteHandle
+{
+	/**
+	 * the batch containing this sprite; null once the sprite has been removed
+	 */
+	SpriteBatch batch;
+
+	/**
+	 * current index of this sprite in the arrays of {@link #batch};
+	 * may change when other sprites are removed
+	 */
+	int index;
+
+	/**
+	 * Create a handle for a sprite in a batch.
+	 * @param batch the batch containing this sprite
+	 * @param index index of this sprite in the batch
+	 */
+	SpriteHandle(SpriteBatch batch, int index)
+	{
+		this.batch = batch;
+		this.index = index;
+	}
+
+	// basic methods
+
+	/**
+	 * Get the x-coordinate of the center of this sprite.
+	 * @return x-coordinate of center of sprite
+	 */
+	public double getX()
+	{
+		return this.batch.x[this.index];
+	}
+
+	/**
+	 * Get the y-coordinate of the center of this sprite.
+	 * @return y-coordinate of center of sprite
+	 */
+	public double getY()
+	{
+		return this.batch.y[this.index];
+	}
+
+	/**
+	 * Set the coordinates of the center of this sprite.
+	 * @param x x-coordinate of center of sprite
+	 * @param y y-coordinate of center of sprite
+	 */
+	public void setPosition(double x, double y)
+	{
+		this.batch.x[this.index] = x;
+		this.batch.y[this.index] = y;
+	}
+
+	/**
+	 * Move this sprite by the specified amounts.
+	 * @param deltaX amount to move sprite along x direction
+	 * @param deltaY amount to move sprite along y direction
+	 */
+	public void moveBy(double deltaX, double deltaY)
+	{
+		this.batch.x[this.index] += deltaX;
+		this.batch.y[this.index] += deltaY;
+	}
+
+	/**
+	 * Set size to use for boundary and when drawing this sprite.
+	 * @param width width of sprite
+	 * @param height height of sprite
+	 */
+	public void setSize(double width, double height)
+	{
+		this.batch.width[this.index] = width;
+		this.batch.height[this.index] = height;
+	}
+
+	/**
+	 * Get the width of this sprite.
+	 * @return width of sprite
+	 */
+	public double getWidth()
+	{
+		return this.batch.width[this.index];
+	}
+
+	/**
+	 * Get the height of this sprite.
+	 * @return height of sprite
+	 */
+	public double getHeight()
+	{
+		return this.batch.height[this.index];
+	}
+
+	/**
+	 * Get the angle of rotation of the texture.
+	 * @return angle of rotation (in degrees)
+	 */
+	public double getAngle()
+	{
+		return this.batch.angle[this.index];
+	}
+
+	/**
+	 * Set the angle of rotation of the texture.
+	 * @param angle angle of rotation (in degrees)
+	 */
+	public void setAngle(double angle)
+	{
+		this.batch.angle[this.index] = angle;
+	}
+
+	/**
+	 * Rotate sprite by the specified angle.
+	 * @param deltaAngle the angle (in degrees) to rotate this sprite
+	 */
+	public void rotateBy(double deltaAngle)
+	{
+		this.batch.angle[this.index] += deltaAngle;
+	}
+
+	/**
+	 * Get the amount of transparency of this sprite.
+	 * @return value from 0.0 (fully transparent) to 1.0 (fully opaque)
+	 */
+	public double getOpacity()
+	{
+		return this.batch.opacity[this.index];
+	}
+
+	/**
+	 * Set the amount of transparency of this sprite.
+	 * @param opacity value from 0.0 (fully transparent) to 1.0 (fully opaque)
+	 */
+	public void setOpacity(double opacity)
+	{
+		this.batch.opacity[this.index] = opacity;
+	}
+
+	/**
+	 * Determine if this sprite will be drawn.
+	 * @return true if this sprite is visible
+	 */
+	public boolean isVisible()
+	{
+		return this.batch.visible[this.index];
+	}
+
+	/**
+	 * Set whether this sprite will be drawn.
+	 * @param visible whether this sprite is visible
+	 */
+	public void setVisible(boolean visible)
+	{
+		this.batch.visible[this.index] = visible;
+	}
+
+	/**
+	 * Remove this sprite from its batch.
+	 */
+	public void remove()
+	{
+		if (this.batch != null)
+			this.batch.removeSprite(this.index);
+	}
+
+	/**
+	 * Determine if this sprite has been removed from its batch.
+	 * @return true if this sprite has been removed
+	 */
+	public boolean isRemoved()
+	{
+		return (this.batch == null);
+	}
+
+	// collision methods
+
+	/**
+	 * Check if this sprite is overlapping another sprite.
+	 * Angle of rotation has no effect on the boundary.
+	 * @param other sprite to check for overlap with
+	 * @return true if this sprite overlaps other sprite
+	 */
+	public boolean isOverlapping(Sprite other)
+	{
+		Rectangle otherBoundary = other.getBoundary();
+		double halfWidth  = this.getWidth()/2;
+		double halfHeight = this.getHeight()/2;
+		boolean noOverlap = (otherBoundary.right <= this.getX() - halfWidth)
+				|| (this.getX() + halfWidth <= otherBoundary.left)
+				|| (otherBoundary.bottom <= this.getY() - halfHeight)
+				|| (this.getY() + halfHeight <= otherBoundary.top);
+		return !noOverlap;
+	}
+
+	// physics methods
+
+	/**
+	 * Enable physics for this sprite; see {@link Physics#Physics(double, double, double)}.
+	 * Velocity is set to 0.
+	 * @param accValue acceleration value
+	 * @param maxSpeed maximum speed
+	 * @param decValue deceleration value
+	 */
+	public void setPhysics(double accValue, double maxSpeed, double decValue)
+	{
+		int i = this.index;
+		this.batch.physicsEnabled[i] = true;
+		this.batch.accelerationValue[i] = accValue;
+		this.batch.maximumSpeed[i] = maxSpeed;
+		this.batch.decelerationValue[i] = decValue;
+		this.batch.velocityX[i] = 0;
+		this.batch.velocityY[i] = 0;
+		this.batch.accelerationX[i] = 0;
+		this.batch.accelerationY[i] = 0;
+	}
+
+	/**
+	 * Calculate speed of this sprite.
+	 * @return speed of sprite
+	 */
+	public double getSpeed()
+	{
+		double vx = this.batch.velocityX[this.index];
+		double vy = this.batch.velocityY[this.index];
+		return Math.sqrt(vx * vx + vy * vy);
+	}
+
+	/**
+	 * Set speed of this sprite, preserving the angle of motion.
+	 * If the speed is currently 0, the sprite will move along the x-axis (angle 0).
+	 * @param speed speed of sprite
+	 */
+	public void setSpeed(double speed)
+	{
+		// scale instead of converting to and from an angle, as in Vector2.setLength
+		int i = this.index;
+		double currentSpeed = this.getSpeed();
+		if (currentSpeed == 0)
+		{
+			this.batch.velocityX[i] = speed;
+			this.batch.velocityY[i] = 0;
+		}
+		else
+		{
+			double scale = speed / currentSpeed;
+			this.batch.velocityX[i] *= scale;
+			this.batch.velocityY[i] *= scale;
+		}
+	}
+
+	/**
+	 * Calculate the angle of motion (in degrees), from -180 to +180;
+	 * returns 0 if the speed is 0.
+	 * @return angle of motion of sprite
+	 */
+	public double getMotionAngle()
+	{
+		double vx = this.batch.velocityX[this.index];
+		double vy = this.batch.velocityY[this.index];
+		if (vx == 0 && vy == 0)
+			return 0;
+		return Math.atan2(vy, vx) * 180/Math.PI;
+	}
+
+	/**
+	 * Set the angle of motion of this sprite, preserving the speed.
+	 * If the speed is 0, this method has no effect.
+	 * @param angleDegrees angle of motion of sprite
+	 */
+	public void setMotionAngle(double angleDegrees)
+	{
+		double speed = this.getSpeed();
+		this.batch.velocityX[this.index] = speed * Math.cos(angleDegrees * Math.PI/180);
+		this.batch.velocityY[this.index] = speed * Math.sin(angleDegrees * Math.PI/180);
+	}
+
+	/**
+	 * Accelerate this sprite in the direction angleDegrees
+	 * by the acceleration value set in {@link #setPhysics(double, double, double)}.
+	 * @param angleDegrees direction of acceleration
+	 */
+	public void accelerateAtAngle(double angleDegrees)
+	{
+		double accValue = Math.abs( this.batch.accelerationValue[this.index] );
+		this.batch.accelerationX[this.index] += accValue * Math.cos(angleDegrees * Math.PI/180);
+		this.batch.accelerationY[this.index] += accValue * Math.sin(angleDegrees * Math.PI/180);
+	}
+}
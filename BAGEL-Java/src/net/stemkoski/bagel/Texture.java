@@ -1,6 +1,11 @@
 package net.stemkoski.bagel;
 
 import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
 import javafx.scene.image.Image;
 
 /**
@@ -22,6 +27,13 @@ public class Texture
 	 */
 	public Rectangle region;
 
+	/**
+	 *  Name of the image file loaded by {@link #load(String)};
+	 *  used to release the image (see {@link #release()}). 
+	 *  Null for textures that share an image loaded elsewhere.
+	 */
+	String imageFileName;
+
 	/**
 	 *  Create an empty texture. Useful when reusing a previously loaded image;
 	 *  used by {@link Animation} and {@link TileMap}.
@@ -38,10 +50,73 @@ public class Texture
 	public static Texture load(String imageFileName)
     {
         Texture tex = new Texture();
-        String fileName = new File(imageFileName).toURI().toString();
-        tex.image   = new Image( fileName );
-        tex.region  = new Rectangle();
-        tex.region.setValues( 0, 0, tex.image.getWidth(), tex.image.getHeight() );
+        tex.image   = Texture.loadImage( imageFileName );
+        tex.region  = Texture.getImageBounds( imageFileName, tex.image );
+        tex.imageFileName = imageFileName;
         return tex;
     }
+
+	/**
+	 * Indicate that this texture is no longer needed.
+	 * Repeated loads of the same image file share a single image (see {@link AssetCache});
+	 * once every texture using an image has been released, the image may be discarded.
+	 * This texture should not be drawn after it has been released.
+	 */
+	public void release()
+	{
+		if (this.imageFileName == null)
+			return;
+
+		AssetCache.releaseImage(this.imageFileName);
+		this.imageFileName = null;
+	}
+
+	/**
+	 * Load the image file with the given file name, 
+	 * reusing a previously loaded image if possible (see {@link AssetCache}).
+	 * When running without a window (see {@link HeadlessRunner}), images are not loaded.
+	 * @param imageFileName name of the image file
+	 * @return the image, or null when running without a window
+	 */
+	static Image loadImage(String imageFileName)
+	{
+		if (Game.headless)
+			return null;
+
+		return AssetCache.acquireImage(imageFileName);
+	}
+
+	/**
+	 * Get a rectangle with the dimensions of an image, positioned at (0,0).
+	 * If the image has not been loaded (see {@link #loadImage(String)}),
+	 * the dimensions are read from the header of the image file instead.
+	 * @param imageFileName name of the image file
+	 * @param image the image loaded from the file, or null
+	 * @return rectangle with the dimensions of the image
+	 */
+	static Rectangle getImageBounds(String imageFileName, Image image)
+	{
+		if (image != null)
+			return new Rectangle( 0, 0, image.getWidth(), image.getHeight() );
+
+		try ( ImageInputStream stream = ImageIO.createImageInputStream( new File(imageFileName) ) )
+		{
+			// file does not exist or is not a supported image format
+			if (stream == null)
+				return new Rectangle();
+			Iterator<ImageReader> readers = ImageIO.getImageReaders(stream);
+			if ( !readers.hasNext() )
+				return new Rectangle();
+
+			ImageReader reader = readers.next();
+			reader.setInput(stream);
+			Rectangle bounds = new Rectangle( 0, 0, reader.getWidth(0), reader.getHeight(0) );
+			reader.dispose();
+			return bounds;
+		}
+		catch (IOException error)
+		{
+			return new Rectangle();
+		}
+	}
 }
@@ -0,0 +1,355 @@
+package net.stemkoski.bagel;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import javafx.scene.image.Image;
+import javafx.scene.image.PixelReader;
+import javafx.scene.image.WritableImage;
+
+/**
+ *  Combines many small images (and {@link Animation} sprite sheets) into a few large images, called pages.
+ *  Each {@link Texture} created by an atlas displays a region of a page rather than a separate image;
+ *  drawing many sprites that share a page is faster than drawing sprites that each use a different image,
+ *  particularly when sprites are drawn in order of page
+ *  (see {@link Group#setDrawSortedByImage(boolean)}).
+ *  <br><br>
+ *  Images are listed with a name, combined with {@link #pack()},
+ *  and then retrieved by name. For example:
+ *  <pre>{@code
+ *  TextureAtlas atlas = new TextureAtlas();
+ *  atlas.addTexture("rock", "assets/space-rocks/rock.png");
+ *  atlas.addTexture("laser", "assets/space-rocks/laser.png");
+ *  atlas.addAnimation("explosion", "assets/space-rocks/explosion.png", 6, 6, 0.03, false);
+ *  atlas.pack();
+ *  System.out.println( atlas.getReport() );
+ *
+ *  rock.setTexture( atlas.getTexture("rock") );
+ *  }</pre>
+ */
+public class TextureAtlas
+{
+	/**
+	 *  An image (or sprite sheet) to be placed on a page.
+	 */
+	static class Item
+	{
+		String name;
+		String imageFileName;
+		int width;
+		int height;
+
+		// sprite sheet properties; rows is 0 for single images
+		int rows;
+		int cols;
+		double frameDuration;
+		boolean loop;
+
+		// location on page, set by pack()
+		int pageIndex;
+		int left;
+		int top;
+	}
+
+	/**
+	 *  A large image containing many items, arranged in horizontal rows (shelves);
+	 *  each item is placed to the right of the previous item in a shelf,
+	 *  and a new shelf is started below the previous shelves when an item does not fit.
+	 */
+	static class Page
+	{
+		/**
+		 * top edge, height, and used width of each shelf (in that order)
+		 */
+		ArrayList<int[]> shelfList = new ArrayList<int[]>();
+
+		/**
+		 * total height of all shelves
+		 */
+		int usedHeight = 0;
+
+		/**
+		 * total area of all items on this page (not including padding)
+		 */
+		long usedArea = 0;
+
+		/**
+		 * number of items on this page
+		 */
+		int itemCount = 0;
+
+		/**
+		 * the combined image; null until drawn, or when running without a window
+		 */
+		WritableImage image;
+	}
+
+	/**
+	 * maximum width of each page
+	 */
+	int pageWidth;
+
+	/**
+	 * maximum height of each page
+	 */
+	int pageHeight;
+
+	/**
+	 * empty space between items on a page,
+	 * to prevent the edges of neighboring items being blended together when drawn
+	 */
+	int padding;
+
+	/**
+	 * images to be placed on pages, in the order they were added
+	 */
+	ArrayList<Item> itemList;
+
+	/**
+	 * pages created by {@link #pack()}
+	 */
+	ArrayList<Page> pageList;
+
+	/**
+	 * Texture and Animation objects created by {@link #pack()}, indexed by name
+	 */
+	HashMap<String, Object> assetMap;
+
+	/**
+	 * Create an empty atlas with pages of size 2048 by 2048.
+	 */
+	public TextureAtlas()
+	{
+		this(2048, 2048);
+	}
+
+	/**
+	 * Create an empty atlas.
+	 * @param pageWidth maximum width of each page
+	 * @param pageHeight maximum height of each page
+	 */
+	public TextureAtlas(int pageWidth, int pageHeight)
+	{
+		this.pageWidth = pageWidth;
+		this.pageHeight = pageHeight;
+		this.padding = 1;
+		this.itemList = new ArrayList<Item>();
+		this.pageList = null;
+		this.assetMap = new HashMap<String, Object>();
+	}
+
+	/**
+	 * Add an item to the list of images to place on pages.
+	 * @param item the item to add
+	 */
+	void addItem(Item item)
+	{
+		if (this.pageList != null)
+			throw new IllegalStateException("Images cannot be added after the atlas has been packed.");
+
+		Rectangle bounds = Texture.getImageBounds( item.imageFileName, null );
+		item.width  = (int)Math.ceil(bounds.width);
+		item.height = (int)Math.ceil(bounds.height);
+		if (item.width + this.padding > this.pageWidth || item.height + this.padding > this.pageHeight)
+			throw new IllegalArgumentException("Image " + item.imageFileName + " is larger than the atlas page size.");
+
+		this.itemList.add(item);
+	}
+
+	/**
+	 * Add an image to this atlas.
+	 * @param name name used to retrieve the Texture with {@link #getTexture(String)}
+	 * @param imageFileName name of the image file
+	 */
+	public void addTexture(String name, String imageFileName)
+	{
+		Item item = new Item();
+		item.name = name;
+		item.imageFileName = imageFileName;
+		item.rows = 0;
+		this.addItem(item);
+	}
+
+	/**
+	 * Add a sprite sheet to this atlas; see {@link Animation#load(String, int, int, double, boolean)}.
+	 * All images of the animation are placed on the same page.
+	 * @param name name used to retrieve the Animation with {@link #getAnimation(String)}
+	 * @param imageFileName name of image file
+	 * @param rows number of rows of individual images in file
+	 * @param cols number of columns of individual images in file
+	 * @param frameDuration amount of time to display each individual image
+	 * @param loop whether this animation should repeat after last image is displayed
+	 */
+	public void addAnimation(String name, String imageFileName, int rows, int cols, double frameDuration, boolean loop)
+	{
+		Item item = new Item();
+		item.name = name;
+		item.imageFileName = imageFileName;
+		item.rows = rows;
+		item.cols = cols;
+		item.frameDuration = frameDuration;
+		item.loop = loop;
+		this.addItem(item);
+	}
+
+	/**
+	 * Arrange all added images on as few pages as possible, draw them onto the pages,
+	 * and create the Texture and Animation objects that display them.
+	 * Taller images are placed first, which keeps the height of each shelf close to the height of its images.
+	 */
+	public void pack()
+	{
+		if (this.pageList != null)
+			return;
+
+		this.pageList = new ArrayList<Page>();
+
+		// stable sort, so images of equal height remain in the order they were added
+		ArrayList<Item> sortedList = new ArrayList<Item>(this.itemList);
+		sortedList.sort( (a, b) -> Integer.compare(b.height, a.height) );
+
+		for (Item item : sortedList)
+			this.place(item);
+
+		for (int pageIndex = 0; pageIndex < this.pageList.size(); pageIndex++)
+		{
+			Page page = this.pageList.get(pageIndex);
+			if (!Game.headless)
+				page.image = new WritableImage( this.pageWidth, Math.max(1, page.usedHeight) );
+		}
+
+		for (Item item : this.itemList)
+		{
+			Page page = this.pageList.get(item.pageIndex);
+			if (page.image != null)
+			{
+				Image source = new Image( AssetCache.getKey(item.imageFileName) );
+				PixelReader reader = source.getPixelReader();
+				int width  = Math.min( item.width,  (int)source.getWidth() );
+				int height = Math.min( item.height, (int)source.getHeight() );
+				page.image.getPixelWriter().setPixels(item.left, item.top, width, height, reader, 0, 0);
+			}
+
+			Rectangle bounds = new Rectangle(item.left, item.top, item.width, item.height);
+			if (item.rows == 0)
+			{
+				Texture texture = new Texture();
+				texture.image = page.image;
+				texture.region = bounds;
+				this.assetMap.put(item.name, texture);
+			}
+			else
+			{
+				Animation animation = Animation.create( page.image, bounds,
+						item.rows, item.cols, item.frameDuration, item.loop );
+				this.assetMap.put(item.name, animation);
+			}
+		}
+	}
+
+	/**
+	 * Choose the location of an item: in the first shelf with enough space,
+	 * otherwise in a new shelf on the first page with enough space, otherwise on a new page.
+	 * @param item the item to place
+	 */
+	void place(Item item)
+	{
+		int width  = item.width + this.padding;
+		int height = item.height + this.padding;
+
+		for (int pageIndex = 0; pageIndex <= this.pageList.size(); pageIndex++)
+		{
+			if (pageIndex == this.pageList.size())
+				this.pageList.add( new Page() );
+
+			Page page = this.pageList.get(pageIndex);
+			int[] shelf = null;
+			for (int[] s : page.shelfList)
+			{
+				if (height <= s[1] && s[2] + width <= this.pageWidth)
+				{
+					shelf = s;
+					break;
+				}
+			}
+
+			if (shelf == null && page.usedHeight + height <= this.pageHeight)
+			{
+				shelf = new int[] { page.usedHeight, height, 0 };
+				page.shelfList.add(shelf);
+				page.usedHeight += height;
+			}
+
+			if (shelf != null)
+			{
+				item.pageIndex = pageIndex;
+				item.left = shelf[2];
+				item.top  = shelf[0];
+				shelf[2] += width;
+				page.usedArea += (long)item.width * item.height;
+				page.itemCount++;
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Get a Texture created by {@link #pack()}.
+	 * @param name name used when the image was added
+	 * @return the Texture, or null if no image was added with this name
+	 */
+	public Texture getTexture(String name)
+	{
+		return (Texture)this.assetMap.get(name);
+	}
+
+	/**
+	 * Get an Animation created by {@link #pack()}. If used by several sprites,
+	 * each sprite should use a copy (see {@link Animation#clone()}).
+	 * @param name name used when the sprite sheet was added
+	 * @return the Animation, or null if no sprite sheet was added with this name
+	 */
+	public Animation getAnimation(String name)
+	{
+		return (Animation)this.assetMap.get(name);
+	}
+
+	/**
+	 * Get the number of pages created by {@link #pack()}.
+	 * @return the number of pages
+	 */
+	public int getPageCount()
+	{
+		return (this.pageList == null) ? 0 : this.pageList.size();
+	}
+
+	/**
+	 * Get the fraction of a page covered by images.
+	 * Each page image is only as tall as needed to contain its images,
+	 * so the fraction is calculated relative to the used height rather than the maximum height.
+	 * @param pageIndex index of the page, from 0 to {@link #getPageCount()} - 1
+	 * @return value from 0.0 (empty) to 1.0 (completely covered)
+	 */
+	public double getPageUtilization(int pageIndex)
+	{
+		Page page = this.pageList.get(pageIndex);
+		return page.usedArea / ((double)this.pageWidth * Math.max(1, page.usedHeight));
+	}
+
+	/**
+	 * Get a description of each page created by {@link #pack()}:
+	 * the number of images, the height used, and the fraction covered by images.
+	 * @return a description of each page, one line per page
+	 */
+	public String getReport()
+	{
+		StringBuilder report = new StringBuilder();
+		for (int pageIndex = 0; pageIndex < this.getPageCount(); pageIndex++)
+		{
+			Page page = this.pageList.get(pageIndex);
+			report.append( String.format("page %d: %d images, %d x %d used, %.1f%% covered%n",
+					pageIndex, page.itemCount, this.pageWidth, page.usedHeight,
+					100 * this.getPageUtilization(pageIndex)) );
+		}
+		return report.toString();
+	}
+}
@@ -2,12 +2,12 @@ package net.stemkoski.bagel;
 
 import javafx.scene.canvas.GraphicsContext;
 
-import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Arrays;
 import javafx.scene.image.Image;
-import java.util.Collections;
+import javafx.scene.image.PixelWriter;
+import javafx.scene.image.WritableImage;
 
 /**
  *   A selection and arrangement of {@link Tile}s 
@@ -63,6 +63,36 @@ public class TileMap extends Entity
 	 */
 	public ArrayList<Texture> tileTextureList;
 
+	/**
+	 * name of the tileset image file loaded by {@link #loadTilesetImage(String)}
+	 */
+	String tilesetFileName;
+
+	/**
+	 * the area of the game world (in pixels) that is visible when drawing;
+	 * only tiles within this area are drawn. if null, the area covered
+	 * by the canvas is used. set by {@link #setViewport(double, double, double, double)}.
+	 */
+	Rectangle viewport;
+
+	/**
+	 * number of rows and columns of tiles in each cached chunk image;
+	 * 0 if chunk caching is not enabled (see {@link #enableChunkCache(int)}).
+	 */
+	int chunkSize;
+
+	/**
+	 * pre-rendered images of square regions of tiles, 
+	 * indexed by chunk row and chunk column; created when first drawn.
+	 * entries are null for chunks that do not contain any tiles.
+	 */
+	Image[][] chunkImageGrid;
+
+	/**
+	 * determines which entries of {@link #chunkImageGrid} have been created
+	 */
+	boolean[][] chunkBuiltGrid;
+
 	/**
 	 * Specify basic data for this TileMap;
 	 * additional data loaded by {@link #loadTilesetImage(String)}
@@ -89,11 +119,16 @@ public class TileMap extends Entity
 	 */
 	public void loadTilesetImage(String imageFileName)
 	{
+		// previous tileset image is no longer used by this TileMap
+		if (this.tilesetFileName != null)
+			AssetCache.releaseImage(this.tilesetFileName);
+
 		this.tileTextureList = new ArrayList<Texture>();
-		String fileName = new File(imageFileName).toURI().toString();
-		Image tileSetImage = new Image(fileName);
-		int tileImageRows  = (int)tileSetImage.getWidth()  / this.tileWidth;
-		int tileImageCols  = (int)tileSetImage.getHeight() / this.tileHeight;
+		Image tileSetImage = Texture.loadImage(imageFileName);
+		this.tilesetFileName = imageFileName;
+		Rectangle imageBounds = Texture.getImageBounds(imageFileName, tileSetImage);
+		int tileImageRows  = (int)imageBounds.width  / this.tileWidth;
+		int tileImageCols  = (int)imageBounds.height / this.tileHeight;
 		for (int y = 0; y < tileImageRows; y++)
 		{
 			for (int x = 0; x < tileImageCols; x++)
@@ -104,6 +139,8 @@ public class TileMap extends Entity
 				this.tileTextureList.add( texture );
 			}
 		}
+
+		this.invalidateChunkCache();
 	}
 
 	/**
@@ -207,6 +244,8 @@ public class TileMap extends Entity
 				}
 			}
 		}
+
+		this.invalidateChunkCache();
 	}
 
 	/**
@@ -249,20 +288,196 @@ public class TileMap extends Entity
 		return positionList;
 	}
 
+	/**
+	 * Set the area of the game world that is visible when drawing this TileMap;
+	 * tiles outside of this area are not drawn.
+	 * By default, the area covered by the canvas is used.
+	 * @param left x-coordinate of left edge of visible area
+	 * @param top y-coordinate of top edge of visible area
+	 * @param width width of visible area
+	 * @param height height of visible area
+	 */
+	public void setViewport(double left, double top, double width, double height)
+	{
+		if (this.viewport == null)
+			this.viewport = new Rectangle();
+		this.viewport.setValues(left, top, width, height);
+	}
+
+	/**
+	 * Draw the tiles within the area covered by the canvas
+	 * (the default behavior), instead of a previously set viewport.
+	 */
+	public void clearViewport()
+	{
+		this.viewport = null;
+	}
+
+	/**
+	 * Draw this TileMap using pre-rendered images of square regions of tiles ("chunks"),
+	 * so that each visible chunk is drawn with a single image rather than one image per tile.
+	 * Useful for large maps whose tiles do not change; 
+	 * chunk images are created as they are first drawn, 
+	 * and each requires (chunkSize * tileWidth) by (chunkSize * tileHeight) pixels of memory.
+	 * If tiles or tile textures are changed after drawing, call {@link #invalidateChunkCache()}.
+	 * @param chunkSize number of rows and columns of tiles in each chunk (for example, 16)
+	 */
+	public void enableChunkCache(int chunkSize)
+	{
+		this.chunkSize = chunkSize;
+		this.invalidateChunkCache();
+	}
+
+	/**
+	 * Stop using pre-rendered chunk images; each visible tile is drawn individually.
+	 */
+	public void disableChunkCache()
+	{
+		this.chunkSize = 0;
+		this.chunkImageGrid = null;
+		this.chunkBuiltGrid = null;
+	}
+
+	/**
+	 * Discard all pre-rendered chunk images; 
+	 * they will be recreated from current tile data as they are drawn.
+	 */
+	public void invalidateChunkCache()
+	{
+		if (this.chunkSize <= 0)
+			return;
+
+		int chunkRows = (this.mapRows + this.chunkSize - 1) / this.chunkSize;
+		int chunkCols = (this.mapCols + this.chunkSize - 1) / this.chunkSize;
+		this.chunkImageGrid = new Image[chunkRows][chunkCols];
+		this.chunkBuiltGrid = new boolean[chunkRows][chunkCols];
+	}
+
+	/**
+	 * Create an image containing all tiles in a chunk, by copying pixels from the tileset image.
+	 * @param chunkRow row index of chunk
+	 * @param chunkCol column index of chunk
+	 * @return image of the tiles in this chunk; null if chunk does not contain any tiles
+	 */
+	Image buildChunkImage(int chunkRow, int chunkCol)
+	{
+		int firstRow = chunkRow * this.chunkSize;
+		int firstCol = chunkCol * this.chunkSize;
+		int lastRow  = Math.min(firstRow + this.chunkSize, this.mapRows) - 1;
+		int lastCol  = Math.min(firstCol + this.chunkSize, this.mapCols) - 1;
+
+		WritableImage image = null;
+		PixelWriter writer  = null;
+
+		for (int r = firstRow; r <= lastRow; r++)
+		{
+			for (int c = firstCol; c <= lastCol; c++)
+			{
+				Tile tile = this.mapTileGrid[r][c];
+				if (tile == null)
+					continue;
+
+				// only create an image once a tile is found
+				if (image == null)
+				{
+					image = new WritableImage( (lastCol - firstCol + 1) * this.tileWidth, 
+							(lastRow - firstRow + 1) * this.tileHeight );
+					writer = image.getPixelWriter();
+				}
+
+				Texture tex = this.tileTextureList.get(tile.tileTextureIndex);
+				writer.setPixels( (c - firstCol) * this.tileWidth, (r - firstRow) * this.tileHeight,
+						this.tileWidth, this.tileHeight,
+						tex.image.getPixelReader(), (int)tex.region.left, (int)tex.region.top );
+			}
+		}
+
+		return image;
+	}
+
+	/**
+	 * Render the tiles of this TileMap that lie within the visible area
+	 * (see {@link #setViewport(double, double, double, double)}) to a canvas.
+	 * If chunk caching is enabled (see {@link #enableChunkCache(int)}), 
+	 * pre-rendered chunk images are drawn instead of individual tiles.
+	 */
 	@Override
 	public void draw(GraphicsContext context)
 	{
-		for (Tile tile : this.mapTileList )
+		double viewLeft, viewTop, viewRight, viewBottom;
+		if (this.viewport != null)
+		{
+			viewLeft   = this.viewport.left;
+			viewTop    = this.viewport.top;
+			viewRight  = this.viewport.right;
+			viewBottom = this.viewport.bottom;
+		}
+		else if (RenderState.viewBoundary != null)
+		{
+			// visible area of game world (see Camera)
+			viewLeft   = RenderState.viewBoundary.left;
+			viewTop    = RenderState.viewBoundary.top;
+			viewRight  = RenderState.viewBoundary.right;
+			viewBottom = RenderState.viewBoundary.bottom;
+		}
+		else
 		{
-			context.setTransform(1,0, 0,1, tile.x, tile.y); 
-			context.setGlobalAlpha(1.0);
+			viewLeft   = 0;
+			viewTop    = 0;
+			viewRight  = context.getCanvas().getWidth() / RenderState.screenScale;
+			viewBottom = context.getCanvas().getHeight() / RenderState.screenScale;
+		}
+
+		// visible area does not contain any part of the map
+		if ( viewRight <= 0 || viewBottom <= 0 
+				|| viewLeft >= this.mapCols * this.tileWidth || viewTop >= this.mapRows * this.tileHeight )
+			return;
+
+		int minRow = this.getRowIndex(viewTop);
+		int maxRow = this.getRowIndex(viewBottom);
+		int minCol = this.getColIndex(viewLeft);
+		int maxCol = this.getColIndex(viewRight);
+
+		// all tiles are drawn at game world coordinates, so transform is only set once
+		RenderState.setIdentityTransform(context);
+		RenderState.setGlobalAlpha(context, 1.0);
+
+		if (this.chunkSize > 0)
+		{
+			for (int chunkRow = minRow / this.chunkSize; chunkRow <= maxRow / this.chunkSize; chunkRow++)
+			{
+				for (int chunkCol = minCol / this.chunkSize; chunkCol <= maxCol / this.chunkSize; chunkCol++)
+				{
+					if ( !this.chunkBuiltGrid[chunkRow][chunkCol] )
+					{
+						this.chunkImageGrid[chunkRow][chunkCol] = this.buildChunkImage(chunkRow, chunkCol);
+						this.chunkBuiltGrid[chunkRow][chunkCol] = true;
+					}
+
+					Image chunkImage = this.chunkImageGrid[chunkRow][chunkCol];
+					if (chunkImage != null)
+						context.drawImage(chunkImage, 
+								chunkCol * this.chunkSize * this.tileWidth, chunkRow * this.chunkSize * this.tileHeight);
+				}
+			}
+			return;
+		}
+
+		for (int r = minRow; r <= maxRow; r++)
+		{
+			for (int c = minCol; c <= maxCol; c++)
+			{
+				Tile tile = this.mapTileGrid[r][c];
+				if (tile == null)
+					continue;
 
-			Texture tex = this.tileTextureList.get(tile.tileTextureIndex);
+				Texture tex = this.tileTextureList.get(tile.tileTextureIndex);
 
-			// image, 4 source parameters, 4 destination parameters
-			context.drawImage(tex.image, 
-					tex.region.left, tex.region.top, tex.region.width, tex.region.height,
-					-this.tileWidth/2, -this.tileHeight/2, this.tileWidth, this.tileHeight);
+				// image, 4 source parameters, 4 destination parameters
+				context.drawImage(tex.image, 
+						tex.region.left, tex.region.top, tex.region.width, tex.region.height,
+						tile.boundary.left, tile.boundary.top, this.tileWidth, this.tileHeight);
+			}
 		}
 	}
 
@@ -273,11 +488,23 @@ public class TileMap extends Entity
 	 */
 	public boolean checkSpriteOverlap(Sprite sprite)
 	{
+		// an empty map has no tiles (and no valid row or column indices)
+		if (this.mapRows == 0 || this.mapCols == 0)
+			return false;
+
 		Rectangle spriteBoundary = sprite.getBoundary();
-		for (Tile tile : mapTileList)
+		int minRow = this.getRowIndex(spriteBoundary.top);
+		int maxRow = this.getRowIndex(spriteBoundary.bottom);
+		int minCol = this.getColIndex(spriteBoundary.left);
+		int maxCol = this.getColIndex(spriteBoundary.right);
+		for (int r = minRow; r <= maxRow; r++)
 		{
-			if ( spriteBoundary.overlaps( tile.boundary ) )
-				return true;
+			for (int c = minCol; c <= maxCol; c++)
+			{
+				Tile tile = this.mapTileGrid[r][c];
+				if ( tile != null && spriteBoundary.overlaps( tile.boundary ) )
+					return true;
+			}
 		}
 		return false;
 	}
@@ -291,47 +518,125 @@ public class TileMap extends Entity
 	 */
 	public void preventSpriteOverlap(Sprite sprite)
 	{
+		// an empty map has no tiles (and no valid row or column indices)
+		if (this.mapRows == 0 || this.mapCols == 0)
+			return;
+
 		Rectangle spriteBoundary = sprite.getBoundary();
-		for (Tile tile : mapTileList)
+		int minRow = this.getRowIndex(spriteBoundary.top);
+		int maxRow = this.getRowIndex(spriteBoundary.bottom);
+		int minCol = this.getColIndex(spriteBoundary.left);
+		int maxCol = this.getColIndex(spriteBoundary.right);
+		for (int r = minRow; r <= maxRow; r++)
 		{
-			if ( spriteBoundary.overlaps( tile.boundary ) )
+			for (int c = minCol; c <= maxCol; c++)
 			{
-				ArrayList<Vector2> differences = new ArrayList<Vector2>();
-
-				if ( tile.edgeLeft != null && spriteBoundary.overlaps(tile.edgeLeft) )
-					differences.add( new Vector2(tile.boundary.left - spriteBoundary.right, 0) ); // to the left
-				if ( tile.edgeRight != null && spriteBoundary.overlaps(tile.edgeRight) )
-					differences.add( new Vector2(tile.boundary.right - spriteBoundary.left, 0) ); // how to displace this sprite to the right
-				if ( tile.edgeTop != null && spriteBoundary.overlaps(tile.edgeTop) )
-					differences.add( new Vector2(0, tile.boundary.top - spriteBoundary.bottom) ); // to the bottom
-				if ( tile.edgeBottom != null && spriteBoundary.overlaps(tile.edgeBottom) )
-					differences.add( new Vector2(0, tile.boundary.bottom - spriteBoundary.top) ); // to the top
-
-				if ( differences.size() > 0 )
-				{
-					// sortable since Vector2 implements Comparable interface
-					Collections.sort(differences);
+				Tile tile = this.mapTileGrid[r][c];
+				if ( tile != null && spriteBoundary.overlaps( tile.boundary ) )
+					this.resolveTileOverlap(sprite, spriteBoundary, tile);
+			}
+		}
+	}
 
-					// get minimum (length) vector to translate by
-					Vector2 mtv = differences.get(0);
-					sprite.moveBy(mtv.x, mtv.y);
+	/**
+	 * Move sprite out of a single overlapping Tile, using only the accessible tile edges.
+	 * Used by {@link #preventSpriteOverlap(Sprite)}.
+	 * @param sprite the sprite to move
+	 * @param spriteBoundary boundary of the sprite at the start of collision resolution
+	 * @param tile a Tile that overlaps the sprite boundary
+	 */
+	void resolveTileOverlap(Sprite sprite, Rectangle spriteBoundary, Tile tile)
+	{
+		// find minimum (length) vector to translate by;
+		//   when equal in length, the first candidate found is used
+		double mtvX = 0;
+		double mtvY = 0;
+		double minLength = Double.POSITIVE_INFINITY;
 
-					// if sprite is using physics, come to a stop in appropriate direction
-					if (sprite.physics != null)
-					{
-						if ( Math.abs(mtv.x) > 0 )
-						{
-							sprite.physics.velocityVector.x = 0;
-							sprite.physics.accelerationVector.x = 0;
-						}
-						if ( Math.abs(mtv.y) > 0 )
-						{
-							sprite.physics.velocityVector.y = 0;
-							sprite.physics.accelerationVector.y = 0;
-						}
-					}
-				}
+		if ( tile.edgeLeft != null && spriteBoundary.overlaps(tile.edgeLeft) )
+		{
+			double dx = tile.boundary.left - spriteBoundary.right; // to the left
+			if ( Math.abs(dx) < minLength )
+			{
+				mtvX = dx;
+				mtvY = 0;
+				minLength = Math.abs(dx);
+			}
+		}
+		if ( tile.edgeRight != null && spriteBoundary.overlaps(tile.edgeRight) )
+		{
+			double dx = tile.boundary.right - spriteBoundary.left; // how to displace this sprite to the right
+			if ( Math.abs(dx) < minLength )
+			{
+				mtvX = dx;
+				mtvY = 0;
+				minLength = Math.abs(dx);
+			}
+		}
+		if ( tile.edgeTop != null && spriteBoundary.overlaps(tile.edgeTop) )
+		{
+			double dy = tile.boundary.top - spriteBoundary.bottom; // to the bottom
+			if ( Math.abs(dy) < minLength )
+			{
+				mtvX = 0;
+				mtvY = dy;
+				minLength = Math.abs(dy);
+			}
+		}
+		if ( tile.edgeBottom != null && spriteBoundary.overlaps(tile.edgeBottom) )
+		{
+			double dy = tile.boundary.bottom - spriteBoundary.top; // to the top
+			if ( Math.abs(dy) < minLength )
+			{
+				mtvX = 0;
+				mtvY = dy;
+				minLength = Math.abs(dy);
+			}
+		}
+
+		// no accessible edges overlap the sprite
+		if ( minLength == Double.POSITIVE_INFINITY )
+			return;
+
+		sprite.moveBy(mtvX, mtvY);
+
+		// if sprite is using physics, come to a stop in appropriate direction
+		if (sprite.physics != null)
+		{
+			if ( Math.abs(mtvX) > 0 )
+			{
+				sprite.physics.velocityVector.x = 0;
+				sprite.physics.accelerationVector.x = 0;
+			}
+			if ( Math.abs(mtvY) > 0 )
+			{
+				sprite.physics.velocityVector.y = 0;
+				sprite.physics.accelerationVector.y = 0;
 			}
 		}
 	}
+
+	/**
+	 * Calculate the index of the map row containing a y-coordinate,
+	 * limited to the range of valid row indices.
+	 * @param y y-coordinate (in pixels)
+	 * @return index of the map row containing y
+	 */
+	int getRowIndex(double y)
+	{
+		int row = (int)Math.floor(y / this.tileHeight);
+		return Math.max(0, Math.min(row, this.mapRows - 1));
+	}
+
+	/**
+	 * Calculate the index of the map column containing an x-coordinate,
+	 * limited to the range of valid column indices.
+	 * @param x x-coordinate (in pixels)
+	 * @return index of the map column containing x
+	 */
+	int getColIndex(double x)
+	{
+		int col = (int)Math.floor(x / this.tileWidth);
+		return Math.max(0, Math.min(col, this.mapCols - 1));
+	}
 }
\ No newline at end of file
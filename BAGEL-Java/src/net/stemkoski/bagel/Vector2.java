@@ -109,13 +109,23 @@ public class Vector2 implements Comparable<Vector2>
     /**
      * Changes the length of this vector to length while 
      * preserving the angle of this vector.
+     * If this vector is the zero vector, the new vector 
+     * points along the x-axis (the vector (length,0)).
      * @param length the new length of this vector
      */
     public void setLength(double length)
     {
-        double angleDegrees = this.getAngle();
-        this.x = length * Math.cos(angleDegrees * Math.PI/180);
-        this.y = length * Math.sin(angleDegrees * Math.PI/180);
+        // scale instead of converting to and from an angle
+        double currentLength = this.getLength();
+        if (currentLength == 0)
+        {
+            this.x = length;
+            this.y = 0;
+        }
+        else
+        {
+            this.multiply(length / currentLength);
+        }
     }   
 
     /**
@@ -0,0 +1,27 @@
+package net.stemkoski.bagel;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ *  Runs the engine benchmarks with allocation profiling enabled.
+ *  Accepts the standard JMH command line options; for example,
+ *  <code>java -jar benchmarks/target/benchmarks.jar GroupBenchmark -p entityCount=1000</code>
+ */
+public class BenchmarkRunner
+{
+	public static void main(String[] args) throws RunnerException, CommandLineOptionException
+	{
+		Options options = new OptionsBuilder()
+				.parent( new CommandLineOptions(args) )
+				.addProfiler( GCProfiler.class )
+				.build();
+
+		new Runner(options).run();
+	}
+}
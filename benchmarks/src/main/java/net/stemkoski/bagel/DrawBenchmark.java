@@ -0,0 +1,108 @@
+package net.stemkoski.bagel;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+import javafx.application.Platform;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.image.WritableImage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ *  Measures {@link Sprite#draw(GraphicsContext)} (through {@link Group#draw(GraphicsContext)})
+ *  and {@link TileMap#draw(GraphicsContext)} against an offscreen canvas.
+ *  Requires the JavaFX toolkit (and therefore a graphics environment).
+ *  Measures the cost of recording drawing commands, not of rendering them on the graphics card.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DrawBenchmark
+{
+	@Param({"100", "1000", "10000"})
+	int entityCount;
+
+	GraphicsContext context;
+
+	Group group;
+
+	TileMap map;
+
+	@Setup
+	public void setup()
+	{
+		try
+		{
+			Platform.startup( () -> {} );
+		}
+		catch (IllegalStateException error)
+		{
+			// toolkit already started
+		}
+
+		this.context = new Canvas(800, 600).getGraphicsContext2D();
+
+		Texture texture = new Texture();
+		texture.image  = new WritableImage(32, 32);
+		texture.region = new Rectangle(0, 0, 32, 32);
+
+		this.group = new Group();
+		for (int n = 0; n < this.entityCount; n++)
+		{
+			Sprite sprite = new Sprite();
+			sprite.setTexture(texture);
+			sprite.setPosition( Math.random() * 800, Math.random() * 600 );
+			sprite.angle = (n % 4 == 0) ? Math.random() * 360 : 0;
+			this.group.addEntity(sprite);
+		}
+
+		int mapSize = (int)Math.sqrt(this.entityCount) * 4;
+		this.map = new TileMap(mapSize, mapSize, 32, 32);
+		String[] mapData = new String[mapSize];
+		for (int r = 0; r < mapSize; r++)
+			mapData[r] = "W".repeat(mapSize);
+		this.map.tileTextureList = new ArrayList<Texture>();
+		this.map.tileTextureList.add(texture);
+		this.map.loadMapData( mapData, new String[] {"W"}, new int[] {0} );
+	}
+
+	/**
+	 * Discard previously recorded drawing commands;
+	 * clearing the entire canvas allows the canvas to reset its command buffer.
+	 */
+	void clearCanvas()
+	{
+		this.context.setTransform(1,0, 0,1, 0,0);
+		this.context.clearRect(0, 0, 800, 600);
+		RenderState.reset(this.context);
+	}
+
+	@Benchmark
+	public GraphicsContext drawSprites()
+	{
+		this.clearCanvas();
+		this.group.draw(this.context);
+		return this.context;
+	}
+
+	@Benchmark
+	public GraphicsContext drawTileMap()
+	{
+		this.clearCanvas();
+		this.map.draw(this.context);
+		return this.context;
+	}
+}
@@ -0,0 +1,57 @@
+package net.stemkoski.bagel;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ *  Measures {@link Group#act(double)} for a group of moving sprites,
+ *  each with physics and a repeating action (similar to the rocks in the SpaceRocks example).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GroupBenchmark
+{
+	@Param({"100", "1000", "10000"})
+	int entityCount;
+
+	Group group;
+
+	@Setup
+	public void setup()
+	{
+		this.group = new Group();
+		for (int n = 0; n < this.entityCount; n++)
+		{
+			Sprite sprite = new Sprite();
+			sprite.setSize(32, 32);
+			sprite.setPosition( Math.random() * 800, Math.random() * 600 );
+			sprite.setPhysics(0, 80, 0);
+			sprite.physics.setSpeed(80);
+			sprite.physics.setMotionAngle( Math.random() * 360 );
+			sprite.addAction( ActionFactory.wrapToScreen(800, 600) );
+			sprite.addAction( ActionFactory.forever( ActionFactory.rotateBy(360, 2) ) );
+			this.group.addEntity(sprite);
+		}
+	}
+
+	@Benchmark
+	public Group act()
+	{
+		this.group.act(1/60.0);
+		return this.group;
+	}
+}
@@ -0,0 +1,167 @@
+package net.stemkoski.bagel;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ *  Measures {@link Physics#update(double)} and {@link PlatformPhysics#update(double)}
+ *  for many bodies, half of which are accelerating each step,
+ *  and the same calculations for the sprites of a {@link SpriteBatch} and using {@link PhysicsBatch},
+ *  both with vector instructions (the benchmark is run with the Vector API module) and without.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+public class PhysicsBenchmark
+{
+	@Param({"100", "10000"})
+	int bodyCount;
+
+	Physics[] physicsArray;
+
+	PlatformPhysics[] platformPhysicsArray;
+
+	SpriteBatch spriteBatch;
+
+	PhysicsBatch physicsBatch;
+
+	PhysicsBatch platformPhysicsBatch;
+
+	PhysicsBatch scalarPhysicsBatch;
+
+	PhysicsBatch scalarPlatformPhysicsBatch;
+
+	@Setup
+	public void setup()
+	{
+		this.physicsArray = new Physics[this.bodyCount];
+		this.platformPhysicsArray = new PlatformPhysics[this.bodyCount];
+		Texture texture = new Texture();
+		texture.region = new Rectangle(0, 0, 16, 16);
+		this.spriteBatch = new SpriteBatch(texture);
+		for (int n = 0; n < this.bodyCount; n++)
+		{
+			Physics physics = new Physics(100, 200, 10);
+			physics.setSpeed( Math.random() * 200 );
+			physics.setMotionAngle( Math.random() * 360 );
+			this.physicsArray[n] = physics;
+
+			PlatformPhysics platformPhysics = new PlatformPhysics(512, 128, 512, 450, 700, 1000);
+			platformPhysics.velocityVector.setValues( Math.random() * 256 - 128, Math.random() * 900 - 450 );
+			this.platformPhysicsArray[n] = platformPhysics;
+
+			SpriteHandle handle = this.spriteBatch.addSprite(0, 0);
+			handle.setPhysics(100, 200, 10);
+			handle.setSpeed( Math.random() * 200 );
+			handle.setMotionAngle( Math.random() * 360 );
+		}
+
+		this.physicsBatch = new PhysicsBatch();
+		this.platformPhysicsBatch = new PhysicsBatch();
+		this.scalarPhysicsBatch = new PhysicsBatch();
+		this.scalarPhysicsBatch.setVectorized(false);
+		this.scalarPlatformPhysicsBatch = new PhysicsBatch();
+		this.scalarPlatformPhysicsBatch.setVectorized(false);
+		for (int n = 0; n < this.bodyCount; n++)
+		{
+			this.physicsBatch.add( this.physicsArray[n] );
+			this.platformPhysicsBatch.add( this.platformPhysicsArray[n] );
+			this.scalarPhysicsBatch.add( this.physicsArray[n] );
+			this.scalarPlatformPhysicsBatch.add( this.platformPhysicsArray[n] );
+		}
+	}
+
+	@Benchmark
+	public Physics[] updatePhysics()
+	{
+		for (int n = 0; n < this.bodyCount; n++)
+		{
+			Physics physics = this.physicsArray[n];
+			if (n % 2 == 0)
+				physics.accelerateAtAngle(n);
+			physics.update(1/60.0);
+		}
+		return this.physicsArray;
+	}
+
+	@Benchmark
+	public PlatformPhysics[] updatePlatformPhysics()
+	{
+		for (int n = 0; n < this.bodyCount; n++)
+		{
+			PlatformPhysics physics = this.platformPhysicsArray[n];
+			if (n % 2 == 0)
+				physics.accelerateAtAngle( (n % 4 == 0) ? 0 : 180 );
+			physics.update(1/60.0);
+		}
+		return this.platformPhysicsArray;
+	}
+
+	@Benchmark
+	public SpriteBatch updateSpriteBatch()
+	{
+		for (int n = 0; n < this.bodyCount; n++)
+		{
+			if (n % 2 == 0)
+				this.spriteBatch.get(n).accelerateAtAngle(n);
+		}
+		this.spriteBatch.act(1/60.0);
+		return this.spriteBatch;
+	}
+
+	@Benchmark
+	public PhysicsBatch updatePhysicsBatch()
+	{
+		return this.updatePhysicsBatch(this.physicsBatch);
+	}
+
+	@Benchmark
+	public PhysicsBatch updatePhysicsBatchScalar()
+	{
+		return this.updatePhysicsBatch(this.scalarPhysicsBatch);
+	}
+
+	@Benchmark
+	public PhysicsBatch updatePlatformPhysicsBatch()
+	{
+		return this.updatePlatformPhysicsBatch(this.platformPhysicsBatch);
+	}
+
+	@Benchmark
+	public PhysicsBatch updatePlatformPhysicsBatchScalar()
+	{
+		return this.updatePlatformPhysicsBatch(this.scalarPlatformPhysicsBatch);
+	}
+
+	PhysicsBatch updatePhysicsBatch(PhysicsBatch batch)
+	{
+		for (int n = 0; n < this.bodyCount; n += 2)
+		{
+			batch.accelerationX[n] = 100 * Math.cos( Math.toRadians(n) );
+			batch.accelerationY[n] = 100 * Math.sin( Math.toRadians(n) );
+		}
+		batch.update(1/60.0);
+		return batch;
+	}
+
+	PhysicsBatch updatePlatformPhysicsBatch(PhysicsBatch batch)
+	{
+		for (int n = 0; n < this.bodyCount; n += 2)
+			batch.accelerationX[n] = (n % 4 == 0) ? 512 : -512;
+		batch.updatePlatform(1/60.0);
+		return batch;
+	}
+}
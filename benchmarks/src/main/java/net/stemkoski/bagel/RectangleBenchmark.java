@@ -0,0 +1,53 @@
+package net.stemkoski.bagel;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ *  Measures {@link Rectangle#getMinTranslationVector(Rectangle)} for a single pair 
+ *  of overlapping rectangles, both creating a new vector and storing into an existing one.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RectangleBenchmark
+{
+	Rectangle first;
+
+	Rectangle second;
+
+	Vector2 result;
+
+	@Setup
+	public void setup()
+	{
+		this.first  = new Rectangle(0, 0, 64, 64);
+		this.second = new Rectangle(40, 10, 64, 64);
+		this.result = new Vector2();
+	}
+
+	@Benchmark
+	public Vector2 minTranslationVector()
+	{
+		return this.first.getMinTranslationVector(this.second);
+	}
+
+	@Benchmark
+	public Vector2 minTranslationVectorInto()
+	{
+		this.first.getMinTranslationVector(this.second, this.result);
+		return this.result;
+	}
+}
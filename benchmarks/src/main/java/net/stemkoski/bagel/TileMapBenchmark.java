@@ -0,0 +1,79 @@
+package net.stemkoski.bagel;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ *  Measures {@link TileMap#preventSpriteOverlap(Sprite)} for many sprites
+ *  on a square map with a border and scattered solid tiles.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TileMapBenchmark
+{
+	@Param({"50", "500"})
+	int mapSize;
+
+	@Param({"10", "300"})
+	int spriteCount;
+
+	TileMap map;
+
+	Sprite[] spriteArray;
+
+	@Setup
+	public void setup()
+	{
+		// texture data is not required for collision
+		this.map = new TileMap(this.mapSize, this.mapSize, 32, 32);
+		String[] mapData = new String[this.mapSize];
+		for (int r = 0; r < this.mapSize; r++)
+		{
+			StringBuilder row = new StringBuilder();
+			for (int c = 0; c < this.mapSize; c++)
+			{
+				boolean border = (r == 0 || c == 0 || r == this.mapSize - 1 || c == this.mapSize - 1);
+				row.append( (border || (r * 7 + c * 13) % 11 == 0) ? "W" : "." );
+			}
+			mapData[r] = row.toString();
+		}
+		this.map.loadMapData( mapData, new String[] {"W"}, new int[] {0} );
+
+		this.spriteArray = new Sprite[this.spriteCount];
+		for (int n = 0; n < this.spriteCount; n++)
+		{
+			Sprite sprite = new Sprite();
+			sprite.setSize(24, 24);
+			sprite.setPhysics(512, 64, 512);
+			this.spriteArray[n] = sprite;
+		}
+	}
+
+	@Benchmark
+	public Sprite[] preventSpriteOverlap()
+	{
+		double worldSize = this.mapSize * 32;
+		for (int n = 0; n < this.spriteCount; n++)
+		{
+			// place each sprite at a repeatable position that usually overlaps a tile
+			Sprite sprite = this.spriteArray[n];
+			sprite.setPosition( (n * 97.3) % worldSize, (n * 59.1) % worldSize );
+			this.map.preventSpriteOverlap(sprite);
+		}
+		return this.spriteArray;
+	}
+}